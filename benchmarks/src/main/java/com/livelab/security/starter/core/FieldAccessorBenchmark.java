@@ -0,0 +1,204 @@
+package com.livelab.security.starter.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * 实体字段读写方式的对比，对应ClassSecurityPlan中FieldAccessor的选型
+ *
+ * 每次调用对三个加密字段各做一次读和一次写，与加解密时按字段数组遍历的方式相同：
+ * - reflectField: 已setAccessible的Field数组
+ * - fieldAccessor: 当前使用的FieldAccessor数组
+ * - methodHandleStaticFinal: 每个字段一个static final的MethodHandle，JIT可以内联，但不能按类动态创建
+ * - methodHandleArray: 按类创建并保存在数组中的MethodHandle，FieldAccessor如果改用MethodHandle就是这种形式
+ * - lambdaMetafactory: 由getter/setter生成的Function/BiConsumer数组
+ *
+ * 运行：mvn -Pbenchmarks package 后 java -jar benchmarks/target/benchmarks.jar FieldAccessorBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class FieldAccessorBenchmark {
+    private static final String[] FIELDS = {"phone", "email", "idCard"};
+
+    private static final MethodHandle GET_PHONE;
+    private static final MethodHandle SET_PHONE;
+    private static final MethodHandle GET_EMAIL;
+    private static final MethodHandle SET_EMAIL;
+    private static final MethodHandle GET_ID_CARD;
+    private static final MethodHandle SET_ID_CARD;
+
+    static {
+        try {
+            GET_PHONE = getter("phone");
+            SET_PHONE = setter("phone");
+            GET_EMAIL = getter("email");
+            SET_EMAIL = setter("email");
+            GET_ID_CARD = getter("idCard");
+            SET_ID_CARD = setter("idCard");
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private Entity entity;
+    private Field[] fields;
+    private FieldAccessor[] accessors;
+    private MethodHandle[] getters;
+    private MethodHandle[] setters;
+    private Function<Object, Object>[] lambdaGetters;
+    private BiConsumer<Object, Object>[] lambdaSetters;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Throwable {
+        entity = new Entity();
+        entity.setPhone("13800138000");
+        entity.setEmail("user@example.com");
+        entity.setIdCard("110101199001011234");
+
+        fields = new Field[FIELDS.length];
+        accessors = new FieldAccessor[FIELDS.length];
+        getters = new MethodHandle[FIELDS.length];
+        setters = new MethodHandle[FIELDS.length];
+        lambdaGetters = new Function[FIELDS.length];
+        lambdaSetters = new BiConsumer[FIELDS.length];
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        for (int i = 0; i < FIELDS.length; i++) {
+            Field field = Entity.class.getDeclaredField(FIELDS[i]);
+            field.setAccessible(true);
+            fields[i] = field;
+            accessors[i] = new FieldAccessor(field);
+            getters[i] = getter(FIELDS[i]).asType(MethodType.methodType(Object.class, Object.class));
+            setters[i] = setter(FIELDS[i]).asType(MethodType.methodType(void.class, Object.class, Object.class));
+
+            String property = Character.toUpperCase(FIELDS[i].charAt(0)) + FIELDS[i].substring(1);
+            MethodHandle getMethod = lookup.findVirtual(Entity.class, "get" + property, MethodType.methodType(String.class));
+            MethodHandle setMethod = lookup.findVirtual(Entity.class, "set" + property,
+                MethodType.methodType(void.class, String.class));
+            CallSite getSite = LambdaMetafactory.metafactory(lookup, "apply", MethodType.methodType(Function.class),
+                MethodType.methodType(Object.class, Object.class), getMethod, getMethod.type());
+            CallSite setSite = LambdaMetafactory.metafactory(lookup, "accept", MethodType.methodType(BiConsumer.class),
+                MethodType.methodType(void.class, Object.class, Object.class), setMethod, setMethod.type());
+            lambdaGetters[i] = (Function<Object, Object>) getSite.getTarget().invoke();
+            lambdaSetters[i] = (BiConsumer<Object, Object>) setSite.getTarget().invoke();
+        }
+    }
+
+    @Benchmark
+    public void reflectField(Blackhole blackhole) throws IllegalAccessException {
+        for (Field field : fields) {
+            Object value = field.get(entity);
+            field.set(entity, value);
+            blackhole.consume(value);
+        }
+    }
+
+    @Benchmark
+    public void fieldAccessor(Blackhole blackhole) {
+        for (FieldAccessor accessor : accessors) {
+            Object value = accessor.get(entity);
+            accessor.set(entity, value);
+            blackhole.consume(value);
+        }
+    }
+
+    @Benchmark
+    public void methodHandleStaticFinal(Blackhole blackhole) throws Throwable {
+        String phone = (String) GET_PHONE.invokeExact(entity);
+        SET_PHONE.invokeExact(entity, phone);
+        String email = (String) GET_EMAIL.invokeExact(entity);
+        SET_EMAIL.invokeExact(entity, email);
+        String idCard = (String) GET_ID_CARD.invokeExact(entity);
+        SET_ID_CARD.invokeExact(entity, idCard);
+        blackhole.consume(phone);
+        blackhole.consume(email);
+        blackhole.consume(idCard);
+    }
+
+    @Benchmark
+    public void methodHandleArray(Blackhole blackhole) throws Throwable {
+        Object target = entity;
+        for (int i = 0; i < getters.length; i++) {
+            Object value = (Object) getters[i].invokeExact(target);
+            setters[i].invokeExact(target, value);
+            blackhole.consume(value);
+        }
+    }
+
+    @Benchmark
+    public void lambdaMetafactory(Blackhole blackhole) {
+        for (int i = 0; i < lambdaGetters.length; i++) {
+            Object value = lambdaGetters[i].apply(entity);
+            lambdaSetters[i].accept(entity, value);
+            blackhole.consume(value);
+        }
+    }
+
+    private static MethodHandle getter(String name) throws ReflectiveOperationException {
+        Field field = Entity.class.getDeclaredField(name);
+        field.setAccessible(true);
+        return MethodHandles.lookup().unreflectGetter(field);
+    }
+
+    private static MethodHandle setter(String name) throws ReflectiveOperationException {
+        Field field = Entity.class.getDeclaredField(name);
+        field.setAccessible(true);
+        return MethodHandles.lookup().unreflectSetter(field);
+    }
+
+    /**
+     * 与User相同形状的实体：三个加密字段
+     */
+    public static class Entity {
+        private String phone;
+        private String email;
+        private String idCard;
+
+        public String getPhone() {
+            return phone;
+        }
+
+        public void setPhone(String phone) {
+            this.phone = phone;
+        }
+
+        public String getEmail() {
+            return email;
+        }
+
+        public void setEmail(String email) {
+            this.email = email;
+        }
+
+        public String getIdCard() {
+            return idCard;
+        }
+
+        public void setIdCard(String idCard) {
+            this.idCard = idCard;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.livelab.security.starter.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 标记数据安全切面拦截的方法：查询结果需要解密，覆盖按方法名的判断
+ */
+@Target({ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface SecureRead {
+}
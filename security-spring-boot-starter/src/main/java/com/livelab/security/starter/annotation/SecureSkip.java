@@ -0,0 +1,12 @@
+package com.livelab.security.starter.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 标记数据安全切面拦截的方法：不处理参数和结果中的实体，用于计数、存在性检查、按ID删除等不涉及敏感字段的方法
+ */
+@Target({ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface SecureSkip {
+}
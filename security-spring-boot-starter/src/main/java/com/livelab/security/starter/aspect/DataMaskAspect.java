@@ -1,6 +1,13 @@
 package com.livelab.security.starter.aspect;
 
 import com.livelab.security.starter.annotation.Mask;
+import com.livelab.security.starter.codec.SecurityCodec;
+import com.livelab.security.starter.codec.SecurityCodecs;
+import com.livelab.security.starter.core.ClassSecurityPlan;
+import com.livelab.security.starter.core.ClassSecurityPlan.MaskField;
+import com.livelab.security.starter.core.LazyDecryptable;
+import com.livelab.security.starter.core.SecureObjectWalker;
+import com.livelab.security.starter.core.SecureObjectWalker.Target;
 import com.livelab.security.starter.util.MaskUtil;
 import com.livelab.security.starter.common.ApiResponse;
 import lombok.extern.slf4j.Slf4j;
@@ -10,9 +17,6 @@ import org.aspectj.lang.annotation.Aspect;
 import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 
-import java.lang.reflect.Field;
-import java.util.Collection;
-
 /**
  * 数据脱敏切面，负责对敏感数据进行脱敏处理
  * - 在Controller返回数据前进行脱敏
@@ -28,7 +32,7 @@ public class DataMaskAspect {
     /**
      * 拦截Controller层的方法，对返回结果进行脱敏处理
      * - 支持对ApiResponse中的数据进行脱敏
-     * - 可以处理单个对象或集合类型的数据
+     * - 可以处理单个对象、集合、分页以及任意层次嵌套在DTO中的对象
      *
      * @param joinPoint 切点
      * @return 处理后的结果
@@ -40,15 +44,9 @@ public class DataMaskAspect {
         
         try {
             if (result instanceof ApiResponse) {
-                Object data = ((ApiResponse<?>) result).getData();
-                if (data instanceof Collection) {
-                    // 处理集合类型的数据
-                    for (Object item : (Collection<?>) data) {
-                        maskFields(item);
-                    }
-                } else if (data != null) {
-                    // 处理单个对象
-                    maskFields(data);
+                // 遍历数据的对象图，集合、分页、Map的值以及DTO中嵌套的对象都会脱敏
+                for (Object item : SecureObjectWalker.collect(((ApiResponse<?>) result).getData(), Target.MASK)) {
+                    maskFields(item);
                 }
             }
         } catch (Exception e) {
@@ -60,13 +58,15 @@ public class DataMaskAspect {
 
     /**
      * 处理对象的字段脱敏
-     * - 查找带有@Mask注解的字段
+     * - 按类的安全处理计划，处理带有@Mask注解的字段（包括父类中的字段）
      * - 根据注解中指定的脱敏类型进行相应的脱敏处理
      * - 支持的脱敏类型：
      *   - PHONE: 手机号，显示前3后4位，中间用****代替
      *   - EMAIL: 邮箱，显示前3后4位加域名，中间用****代替
      *   - ID_CARD: 身份证号，显示前6后4位，中间用********代替
      *   - CUSTOM: 自定义脱敏规则
+     * - 延迟解密的代理对象先完成解密，脱敏作用于明文而不是密文
+     * - 类有编译期生成的SecurityCodec时直接调用，不再反射读写字段
      *
      * @param obj 需要脱敏的对象
      */
@@ -74,21 +74,31 @@ public class DataMaskAspect {
         if (obj == null) {
             return;
         }
+        SecurityCodec<Object> codec = SecurityCodecs.find(obj.getClass());
+        if (codec != null) {
+            try {
+                codec.mask(obj);
+            } catch (Exception e) {
+                log.error("Error masking entity: " + obj.getClass().getName(), e);
+            }
+            return;
+        }
+        ClassSecurityPlan plan = ClassSecurityPlan.of(obj.getClass());
+        if (!plan.hasMaskFields()) {
+            return;
+        }
+        if (obj instanceof LazyDecryptable) {
+            ((LazyDecryptable) obj).materializeSecureFields();
+        }
 
-        Class<?> clazz = obj.getClass();
-        Field[] fields = clazz.getDeclaredFields();
-
-        for (Field field : fields) {
+        for (MaskField field : plan.getMaskFields()) {
             try {
-                Mask mask = field.getAnnotation(Mask.class);
-                if (mask != null) {
-                    field.setAccessible(true);
-                    Object value = field.get(obj);
-                    if (value instanceof String) {
-                        // 根据注解指定的类型和模式进行脱敏
-                        String maskedValue = MaskUtil.maskValue((String) value, mask.type(), mask.pattern());
-                        field.set(obj, maskedValue);
-                    }
+                Object value = field.get(obj);
+                if (value instanceof String) {
+                    // 根据注解指定的类型和模式进行脱敏
+                    Mask mask = field.getMask();
+                    String maskedValue = MaskUtil.maskValue((String) value, mask.type(), mask.pattern());
+                    field.set(obj, maskedValue);
                 }
             } catch (Exception e) {
                 log.error("Error masking field: " + field.getName(), e);
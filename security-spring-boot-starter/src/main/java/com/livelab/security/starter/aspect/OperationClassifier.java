@@ -0,0 +1,122 @@
+package com.livelab.security.starter.aspect;
+
+import com.livelab.security.starter.annotation.SecureRead;
+import com.livelab.security.starter.annotation.SecureSkip;
+import com.livelab.security.starter.annotation.SecureWrite;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.core.MethodClassKey;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 数据安全切面拦截的方法分类，每个方法只判断一次
+ *
+ * 判断顺序：
+ * 1. 方法上的@SecureSkip、@SecureWrite、@SecureRead，实现类方法上的注解优先于接口和父类中同名方法上的注解
+ * 2. 方法名前缀：insert、update、save、add、modify、create、batch为写操作；
+ *    select、get、list、find、query、search、page为读操作；
+ *    count、exists、delete、remove及其他方法不处理
+ * 3. 读操作的返回值是void、基本类型、数字、布尔或字符串时不可能包含实体，不处理
+ */
+public class OperationClassifier {
+    private static final String[] WRITE_PREFIXES = {"insert", "update", "save", "add", "modify", "create", "batch"};
+    private static final String[] READ_PREFIXES = {"select", "get", "list", "find", "query", "search", "page"};
+
+    /**
+     * 方法的处理方式
+     */
+    public enum Operation {
+        /**
+         * 解密返回结果
+         */
+        READ,
+        /**
+         * 加密参数并生成摘要
+         */
+        WRITE,
+        /**
+         * 直接执行，不处理参数和结果
+         */
+        SKIP
+    }
+
+    private final ConcurrentMap<MethodClassKey, Operation> cache = new ConcurrentHashMap<>(256);
+
+    /**
+     * 获取方法的处理方式
+     *
+     * @param method 切点签名中的方法
+     * @param targetClass 目标对象的类，用于查找实现类方法上的注解
+     * @return 处理方式
+     */
+    public Operation classify(Method method, Class<?> targetClass) {
+        MethodClassKey key = new MethodClassKey(method, targetClass);
+        Operation operation = cache.get(key);
+        if (operation == null) {
+            operation = compute(method, targetClass);
+            cache.putIfAbsent(key, operation);
+        }
+        return operation;
+    }
+
+    private static Operation compute(Method method, Class<?> targetClass) {
+        Method specificMethod = targetClass != null ? AopUtils.getMostSpecificMethod(method, targetClass) : method;
+        // 实现类方法上直接声明的注解优先于接口和父类中的注解
+        Operation annotated = fromAnnotations(specificMethod, false);
+        if (annotated == null) {
+            annotated = fromAnnotations(specificMethod, true);
+        }
+        if (annotated == null && specificMethod != method) {
+            annotated = fromAnnotations(method, true);
+        }
+        if (annotated != null) {
+            return annotated;
+        }
+
+        String name = method.getName().toLowerCase(Locale.ROOT);
+        if (startsWithAny(name, WRITE_PREFIXES)) {
+            return Operation.WRITE;
+        }
+        if (startsWithAny(name, READ_PREFIXES) && mayReturnEntity(method.getReturnType())) {
+            return Operation.READ;
+        }
+        return Operation.SKIP;
+    }
+
+    private static Operation fromAnnotations(Method method, boolean inherited) {
+        if (isAnnotated(method, SecureSkip.class, inherited)) {
+            return Operation.SKIP;
+        }
+        if (isAnnotated(method, SecureWrite.class, inherited)) {
+            return Operation.WRITE;
+        }
+        if (isAnnotated(method, SecureRead.class, inherited)) {
+            return Operation.READ;
+        }
+        return null;
+    }
+
+    private static boolean isAnnotated(Method method, Class<? extends Annotation> annotationType, boolean inherited) {
+        return inherited ? AnnotatedElementUtils.hasAnnotation(method, annotationType)
+            : AnnotatedElementUtils.isAnnotated(method, annotationType);
+    }
+
+    private static boolean startsWithAny(String name, String[] prefixes) {
+        for (String prefix : prefixes) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean mayReturnEntity(Class<?> returnType) {
+        return !(returnType.isPrimitive() || Number.class.isAssignableFrom(returnType)
+            || returnType == Boolean.class || returnType == String.class || returnType == Void.class);
+    }
+}
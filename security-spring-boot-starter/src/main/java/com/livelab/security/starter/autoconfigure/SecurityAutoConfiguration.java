@@ -3,16 +3,34 @@ package com.livelab.security.starter.autoconfigure;
 import com.livelab.security.starter.aspect.DataMaskAspect;
 import com.livelab.security.starter.aspect.DataSecurityAspect;
 import com.livelab.security.starter.util.CryptoUtil;
+import com.livelab.security.starter.core.DecryptResultCache;
+import com.livelab.security.starter.core.EntitySecurityProcessor;
 import com.livelab.security.starter.core.KeyManager;
+import com.livelab.security.starter.core.KeyRotationLease;
+import com.livelab.security.starter.core.LazyDecryptor;
+import com.livelab.security.starter.core.ParallelDecryptor;
+import com.livelab.security.starter.core.PipelinedBatchWriter;
+import com.livelab.security.starter.crypto.CipherEngines;
+import com.livelab.security.starter.crypto.CipherTextFormat;
+import com.livelab.security.starter.exception.SecurityException;
+import com.livelab.security.starter.interceptor.DataSecurityInterceptor;
+import com.livelab.security.starter.mapper.SecurityKeyLeaseMapper;
 import com.livelab.security.starter.mapper.SecurityKeyMapper;
 import com.livelab.security.starter.properties.SecurityProperties;
+import com.livelab.security.starter.query.SecureBatchLookup;
 import com.livelab.security.starter.util.DigestUtil;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
 import org.springframework.boot.autoconfigure.AutoConfigureAfter;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
+
+import java.util.Map;
 import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
@@ -53,7 +71,8 @@ import org.springframework.scheduling.annotation.EnableScheduling;
  * 组件依赖关系：
  * 1. KeyManager依赖于SecurityProperties和SecurityKeyMapper
  * 2. CryptoUtil依赖于KeyManager
- * 3. DataSecurityAspect依赖于CryptoUtil和DigestUtil
+ * 3. EntitySecurityProcessor依赖于CryptoUtil和DigestUtil
+ * 4. DataSecurityAspect或DataSecurityInterceptor（按security.crypto.mode选择）依赖于EntitySecurityProcessor
  */
 @Configuration
 @EnableConfigurationProperties(SecurityProperties.class)
@@ -70,14 +89,22 @@ public class SecurityAutoConfiguration {
      * 2. 提供密钥的存取接口
      * 3. 确保密钥的安全性和有效性
      *
+     * 当security.crypto.rotation-mode=coordinated时，通过数据库租约选出一个节点负责密钥轮换
+     *
      * @param properties 安全模块的配置属性，包含密钥管理的相关配置
      * @param securityKeyMapper 密钥数据访问接口，用于密钥的持久化操作
+     * @param leaseMapper 密钥轮换租约数据访问接口
      * @return KeyManager实例
      */
     @Bean
     @ConditionalOnMissingBean
-    public KeyManager keyManager(SecurityProperties properties, SecurityKeyMapper securityKeyMapper) {
-        return new KeyManager(properties, securityKeyMapper);
+    public KeyManager keyManager(SecurityProperties properties, SecurityKeyMapper securityKeyMapper,
+                                 SecurityKeyLeaseMapper leaseMapper) {
+        KeyRotationLease rotationLease = null;
+        if ("coordinated".equalsIgnoreCase(properties.getCrypto().getRotationMode())) {
+            rotationLease = new KeyRotationLease(leaseMapper, properties.getCrypto().getRotationLeaseSeconds());
+        }
+        return new KeyManager(properties, securityKeyMapper, rotationLease);
     }
 
     /**
@@ -86,15 +113,23 @@ public class SecurityAutoConfiguration {
      * 主要职责：
      * 1. 提供数据加密和解密功能
      * 2. 使用KeyManager获取最新的密钥
-     * 3. 实现加密算法的封装
+     * 3. 按security.crypto.algorithm选择加密引擎，按security.crypto.format选择密文格式
+     * 4. 按security.crypto.decrypt-cache开启解密结果缓存
      *
      * @param keyManager 密钥管理器，提供密钥服务
+     * @param properties 安全模块的配置属性，包含密钥缓存容量、加密算法、密文格式和解密结果缓存
      * @return CryptoUtil实例
      */
     @Bean
     @ConditionalOnMissingBean
-    public CryptoUtil cryptoUtil(KeyManager keyManager) {
-        return new CryptoUtil(keyManager);
+    public CryptoUtil cryptoUtil(KeyManager keyManager, SecurityProperties properties) {
+        SecurityProperties.CryptoProperties crypto = properties.getCrypto();
+        CipherEngines engines = CipherEngines.create(crypto.getAlgorithm(), crypto.getBenchmarkRounds());
+        SecurityProperties.DecryptCacheProperties cache = crypto.getDecryptCache();
+        DecryptResultCache decryptCache = cache.isEnabled()
+            ? new DecryptResultCache(cache.getMaxEntries(), cache.getTtlSeconds()) : null;
+        return new CryptoUtil(keyManager, crypto.getKeyCacheCapacity(), engines, CipherTextFormat.of(crypto.getFormat()),
+            decryptCache);
     }
 
     /**
@@ -104,13 +139,45 @@ public class SecurityAutoConfiguration {
      * 1. 提供数据摘要（如哈希）计算功能
      * 2. 支持多种摘要算法
      * 3. 用于数据完整性校验
+     * 4. security.digest.mode=hmac时使用按版本配置的索引密钥计算HMAC-SM3
      *
+     * @param properties 安全模块的配置属性，包含摘要模式和索引密钥
      * @return DigestUtil实例
      */
     @Bean
     @ConditionalOnMissingBean
-    public DigestUtil digestUtil() {
-        return new DigestUtil();
+    public DigestUtil digestUtil(SecurityProperties properties) {
+        DigestUtil digestUtil = new DigestUtil();
+        SecurityProperties.DigestProperties digest = properties.getDigest();
+        if ("hmac".equalsIgnoreCase(digest.getMode())) {
+            digestUtil.useHmacKeys(digest.getKeys(), digest.getActiveVersion());
+        } else if (!"salted".equalsIgnoreCase(digest.getMode())) {
+            throw new SecurityException("Unsupported digest mode: " + digest.getMode());
+        }
+        return digestUtil;
+    }
+
+    /**
+     * 配置实体的安全处理
+     *
+     * 主要职责：
+     * 1. 写入前对实体加密并生成摘要，查询后解密
+     * 2. 由数据安全切面或MyBatis拦截器调用，两种集成方式的处理逻辑一致
+     * 3. security.crypto.lazy-decrypt=true时查询结果延迟到字段首次读取时解密
+     *
+     * @param cryptoUtil 加密工具，用于数据加密解密
+     * @param digestUtil 摘要工具，用于生成摘要
+     * @param parallelDecryptor 并行解密执行器，用于大结果集的解密
+     * @param properties 安全模块的配置属性，包含延迟解密开关
+     * @return EntitySecurityProcessor实例
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public EntitySecurityProcessor entitySecurityProcessor(CryptoUtil cryptoUtil, DigestUtil digestUtil,
+                                                           ParallelDecryptor parallelDecryptor,
+                                                           SecurityProperties properties) {
+        LazyDecryptor lazyDecryptor = properties.getCrypto().isLazyDecrypt() ? new LazyDecryptor(cryptoUtil) : null;
+        return new EntitySecurityProcessor(cryptoUtil, digestUtil, parallelDecryptor, lazyDecryptor);
     }
 
     /**
@@ -121,14 +188,134 @@ public class SecurityAutoConfiguration {
      * 2. 自动处理数据的加密和解密
      * 3. 确保数据在传输和存储过程中的安全性
      *
-     * @param cryptoUtil 加密工具，用于数据加密解密
-     * @param digestUtil 摘要工具，用于数据完整性校验
+     * 仅在security.crypto.mode=aspect（默认）时启用
+     *
+     * @param processor 实体的安全处理
      * @return DataSecurityAspect实例
      */
     @Bean
     @ConditionalOnMissingBean
-    public DataSecurityAspect dataSecurityAspect(CryptoUtil cryptoUtil, DigestUtil digestUtil) {
-        return new DataSecurityAspect(cryptoUtil, digestUtil);
+    @ConditionalOnProperty(prefix = "security.crypto", name = "mode", havingValue = "aspect", matchIfMissing = true)
+    public DataSecurityAspect dataSecurityAspect(EntitySecurityProcessor processor) {
+        return new DataSecurityAspect(processor);
+    }
+
+    /**
+     * 配置数据安全的MyBatis拦截器
+     *
+     * 主要职责：
+     * 1. 在INSERT、UPDATE语句执行前加密参数中的实体
+     * 2. 在结果映射完成后解密查询结果
+     * 3. 每一行只处理一次，不受Service、Mapper调用层级的影响
+     *
+     * 仅在security.crypto.mode=interceptor时启用
+     *
+     * @param processor 实体的安全处理
+     * @return DataSecurityInterceptor实例
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "security.crypto", name = "mode", havingValue = "interceptor")
+    public DataSecurityInterceptor dataSecurityInterceptor(EntitySecurityProcessor processor) {
+        return new DataSecurityInterceptor(processor);
+    }
+
+    /**
+     * 将数据安全拦截器注册到业务的SqlSessionFactory
+     *
+     * MyBatis-Plus自动配置创建的SqlSessionFactory会自动加入拦截器，这里补充注册其他方式创建的SqlSessionFactory；
+     * 安全模块自身的securitySqlSessionFactory只访问密钥表，不注册
+     *
+     * @param interceptor 数据安全拦截器
+     * @param beanFactory 用于查找所有SqlSessionFactory
+     * @return 在所有单例初始化完成后执行注册的回调
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "security.crypto", name = "mode", havingValue = "interceptor")
+    public SmartInitializingSingleton dataSecurityInterceptorRegistrar(DataSecurityInterceptor interceptor,
+                                                                       ListableBeanFactory beanFactory) {
+        return () -> {
+            for (Map.Entry<String, SqlSessionFactory> entry : beanFactory.getBeansOfType(SqlSessionFactory.class).entrySet()) {
+                org.apache.ibatis.session.Configuration configuration = entry.getValue().getConfiguration();
+                if (!"securitySqlSessionFactory".equals(entry.getKey())
+                    && !configuration.getInterceptors().contains(interceptor)) {
+                    configuration.addInterceptor(interceptor);
+                }
+            }
+        };
+    }
+
+    /**
+     * 配置并行解密执行器
+     *
+     * 主要职责：
+     * 1. 结果集超过阈值时，在专用的ForkJoinPool中并行解密
+     * 2. 限制专用线程池的并行度，避免加解密任务挤占请求线程的CPU
+     *
+     * @param properties 安全模块的配置属性，包含并行解密的开关、阈值和并行度
+     * @return ParallelDecryptor实例
+     */
+    @Bean(destroyMethod = "shutdown")
+    @ConditionalOnMissingBean
+    public ParallelDecryptor parallelDecryptor(SecurityProperties properties) {
+        SecurityProperties.ParallelProperties parallel = properties.getCrypto().getParallel();
+        return new ParallelDecryptor(parallel.isEnabled(), parallel.getThreshold(), parallel.getParallelism());
+    }
+
+    /**
+     * 配置流水线批量写入
+     *
+     * 主要职责：
+     * 1. 批量保存时在工作线程中加密下一个分片，与当前分片的executeBatch重叠执行
+     * 2. 整个批量写入使用同一个密钥快照，并通过有界队列限制提前加密的分片数
+     *
+     * @param processor 实体的安全处理，用于分片的加密和摘要
+     * @param cryptoUtil 加密工具，用于获取密钥快照
+     * @param properties 安全模块的配置属性，包含工作线程数和队列容量
+     * @return PipelinedBatchWriter实例
+     */
+    @Bean(destroyMethod = "shutdown")
+    @ConditionalOnMissingBean
+    public PipelinedBatchWriter pipelinedBatchWriter(EntitySecurityProcessor processor, CryptoUtil cryptoUtil,
+                                                     SecurityProperties properties) {
+        SecurityProperties.BatchWriteProperties batchWrite = properties.getCrypto().getBatchWrite();
+        return new PipelinedBatchWriter(processor, cryptoUtil, batchWrite.getThreads(), batchWrite.getQueueCapacity());
+    }
+
+    /**
+     * 配置按加密字段批量查询
+     *
+     * 主要职责：
+     * 1. 批量计算明文的摘要，按摘要列分片执行IN查询
+     * 2. 把查询结果映射回输入的明文，用于对账、去重等一次解析大量值的场景
+     *
+     * @param digestUtil 摘要工具，用于批量计算摘要
+     * @param properties 安全模块的配置属性，包含每条IN条件的摘要数上限
+     * @return SecureBatchLookup实例
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public SecureBatchLookup secureBatchLookup(DigestUtil digestUtil, SecurityProperties properties) {
+        return new SecureBatchLookup(digestUtil, properties.getDigest().getLookupChunkSize());
+    }
+
+    /**
+     * 配置启动预热
+     *
+     * 仅在security.warm-up.enabled=true时启用，
+     * 在应用开始接收请求前预加载密钥并预热加密、解密、摘要路径，避免发布后首批请求的延迟尖刺
+     *
+     * @param keyManager 密钥管理器，用于批量加载密钥
+     * @param cryptoUtil 加密工具，预热加密解密路径
+     * @param digestUtil 摘要工具，预热摘要路径
+     * @param properties 安全模块的配置属性，包含预热轮数
+     * @return SecurityWarmUp实例
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "security.warm-up", name = "enabled", havingValue = "true")
+    public SecurityWarmUp securityWarmUp(KeyManager keyManager, CryptoUtil cryptoUtil, DigestUtil digestUtil,
+                                         SecurityProperties properties) {
+        return new SecurityWarmUp(keyManager, cryptoUtil, digestUtil, properties);
     }
 
 
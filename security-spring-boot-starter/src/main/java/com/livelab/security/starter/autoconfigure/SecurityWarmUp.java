@@ -0,0 +1,58 @@
+package com.livelab.security.starter.autoconfigure;
+
+import com.livelab.security.starter.core.KeyManager;
+import com.livelab.security.starter.properties.SecurityProperties;
+import com.livelab.security.starter.util.CryptoUtil;
+import com.livelab.security.starter.util.DigestUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+
+import java.util.Map;
+
+/**
+ * 安全模块启动预热
+ *
+ * 在所有单例Bean初始化完成后、Web服务器开始接收请求前执行：
+ * 1. 一次查询批量加载所有未失效的密钥，写入解密密钥缓存
+ * 2. 加载当前加密密钥
+ * 3. 按配置的轮数执行加密、解密、摘要，触发BouncyCastle Provider和Cipher的初始化以及JIT编译
+ *
+ * 预热失败只记录日志，不影响应用启动
+ */
+@Slf4j
+public class SecurityWarmUp implements SmartInitializingSingleton {
+    private static final String SAMPLE = "13800000000";
+
+    private final KeyManager keyManager;
+    private final CryptoUtil cryptoUtil;
+    private final DigestUtil digestUtil;
+    private final SecurityProperties properties;
+
+    public SecurityWarmUp(KeyManager keyManager, CryptoUtil cryptoUtil, DigestUtil digestUtil, SecurityProperties properties) {
+        this.keyManager = keyManager;
+        this.cryptoUtil = cryptoUtil;
+        this.digestUtil = digestUtil;
+        this.properties = properties;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        long start = System.currentTimeMillis();
+        try {
+            Map<Long, String> keyValues = keyManager.getActiveKeyValues();
+            cryptoUtil.preloadKeys(keyValues);
+            keyManager.getKeyInfo();
+
+            int rounds = properties.getWarmUp().getRounds();
+            for (int i = 0; i < rounds; i++) {
+                String encrypted = cryptoUtil.encrypt(SAMPLE);
+                cryptoUtil.decrypt(encrypted);
+                digestUtil.digest(SAMPLE);
+            }
+            log.info("Security warm-up finished: {} keys preloaded, {} rounds in {} ms",
+                keyValues.size(), rounds, System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.error("Security warm-up failed", e);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.livelab.security.starter.codec;
+
+import com.livelab.security.starter.util.DigestUtil;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * 实体类的安全编解码器
+ *
+ * 由SecurityCodecProcessor在编译期为带有@Encrypt、@Decrypt、@Digest、@Mask注解的实体生成，
+ * 类名为{实体类名}_SecurityCodec，与实体位于同一个包中。生成的实现直接调用实体的getter/setter，
+ * 切面找到编解码器时不再通过反射读写字段，找不到时回退到ClassSecurityPlan
+ *
+ * 加解密分为收集和写回两步：先按字段顺序收集待处理的值，由调用方统一批量加解密后，
+ * 再按相同的顺序写回。两步之间实体的加密字段不能被修改。编解码器本身不持有加解密工具，
+ * 批量处理、失败回退和错误日志都由调用方负责
+ *
+ * @param <T> 实体类型
+ */
+public interface SecurityCodec<T> {
+
+    /**
+     * 编解码器对应的实体类，只处理该类的实例，不处理其子类
+     */
+    Class<T> getType();
+
+    /**
+     * 收集@Encrypt字段中待加密的明文
+     *
+     * @param entity 实体
+     * @param values 收集明文的列表
+     */
+    void collectEncrypt(T entity, List<String> values);
+
+    /**
+     * 收集@Digest字段中待生成摘要的明文，需要在applyEncrypt之前调用
+     *
+     * @param entity 实体
+     * @param values 收集明文的列表
+     */
+    void collectDigest(T entity, List<String> values);
+
+    /**
+     * 按collectDigest收集的顺序将摘要写入对应的{字段名}Digest字段，需要在applyEncrypt之前调用
+     *
+     * @param entity 实体
+     * @param digests 摘要，每写入一个字段消费一个元素
+     */
+    void applyDigest(T entity, Iterator<String> digests);
+
+    /**
+     * 将@Digest字段明文的摘要写入对应的{字段名}Digest字段，需要在applyEncrypt之前调用
+     * 批量处理时应由调用方汇总多个实体的collectDigest后统一计算
+     *
+     * @param entity 实体
+     * @param digestUtil 摘要工具
+     */
+    default void digest(T entity, DigestUtil digestUtil) {
+        List<String> values = new ArrayList<>();
+        collectDigest(entity, values);
+        if (!values.isEmpty()) {
+            applyDigest(entity, digestUtil.digestAll(values).iterator());
+        }
+    }
+
+    /**
+     * 按collectEncrypt收集的顺序写回密文
+     *
+     * @param entity 实体
+     * @param values 密文，每写回一个字段消费一个元素
+     */
+    void applyEncrypt(T entity, Iterator<String> values);
+
+    /**
+     * 收集同时带有@Decrypt和@Encrypt注解的字段中的密文，非密文的值不收集
+     *
+     * @param entity 实体
+     * @param values 收集密文的列表
+     */
+    void collectDecrypt(T entity, List<String> values);
+
+    /**
+     * 按collectDecrypt收集的顺序写回明文
+     *
+     * @param entity 实体
+     * @param values 明文，每写回一个字段消费一个元素
+     */
+    void applyDecrypt(T entity, Iterator<String> values);
+
+    /**
+     * 按@Mask注解对字段脱敏
+     *
+     * @param entity 实体
+     */
+    void mask(T entity);
+}
@@ -0,0 +1,65 @@
+package com.livelab.security.starter.codec;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 编译期生成的SecurityCodec的查找入口
+ *
+ * 按{实体类名}_SecurityCodec的命名约定从实体的类加载器中加载，每个类只查找一次，
+ * 结果（包括未找到）通过ClassValue缓存。代理类、子类等与编解码器类型不完全一致的类返回null，
+ * 调用方回退到ClassSecurityPlan
+ */
+@Slf4j
+public final class SecurityCodecs {
+    /**
+     * 生成类名的后缀
+     */
+    public static final String CLASS_SUFFIX = "_SecurityCodec";
+
+    private static final ClassValue<SecurityCodec<?>> CODECS = new ClassValue<SecurityCodec<?>>() {
+        @Override
+        protected SecurityCodec<?> computeValue(Class<?> type) {
+            return load(type);
+        }
+    };
+
+    private SecurityCodecs() {
+    }
+
+    /**
+     * 查找实体类的编解码器
+     *
+     * @param type 实体的运行时类型
+     * @return 编解码器，没有为该类生成时返回null
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> SecurityCodec<T> find(Class<? extends T> type) {
+        return (SecurityCodec<T>) CODECS.get(type);
+    }
+
+    private static SecurityCodec<?> load(Class<?> type) {
+        ClassLoader classLoader = type.getClassLoader();
+        if (classLoader == null || type.isPrimitive() || type.isArray() || type.isInterface()
+            || type.getName().startsWith("java.")) {
+            return null;
+        }
+        Class<?> codecClass;
+        try {
+            codecClass = Class.forName(type.getName() + CLASS_SUFFIX, true, classLoader);
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+        try {
+            SecurityCodec<?> codec = (SecurityCodec<?>) codecClass.getDeclaredConstructor().newInstance();
+            if (codec.getType() != type) {
+                log.warn("Ignoring security codec {}: it handles {}", codecClass.getName(), codec.getType().getName());
+                return null;
+            }
+            log.debug("Using generated security codec for {}", type.getName());
+            return codec;
+        } catch (ReflectiveOperationException | ClassCastException | LinkageError e) {
+            log.warn("Failed to load security codec {}, falling back to reflection", codecClass.getName(), e);
+            return null;
+        }
+    }
+}
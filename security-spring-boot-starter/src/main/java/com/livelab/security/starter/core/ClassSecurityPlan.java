@@ -0,0 +1,289 @@
+package com.livelab.security.starter.core;
+
+import com.livelab.security.starter.annotation.Decrypt;
+import com.livelab.security.starter.annotation.Digest;
+import com.livelab.security.starter.annotation.Encrypt;
+import com.livelab.security.starter.annotation.Mask;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 实体类的安全处理计划，每个类只分析一次
+ *
+ * 替代每次调用时的getDeclaredFields、getAnnotation和setAccessible：
+ * 1. 只保留带有@Encrypt、@Decrypt、@Digest、@Mask注解的字段，读写通过预先绑定的FieldAccessor完成
+ * 2. @Digest字段在分析时就配对好对应的{字段名}Digest字段，以及记录摘要密钥版本的digestVersion字段
+ * 3. 包含父类中声明的字段
+ * 4. 没有任何注解的类得到空计划，调用方可直接跳过
+ *
+ * 计划创建后不可变，通过ClassValue缓存，不会阻止类被卸载
+ */
+@Slf4j
+public final class ClassSecurityPlan {
+    private static final SecureField[] NO_SECURE_FIELDS = new SecureField[0];
+    private static final MaskField[] NO_MASK_FIELDS = new MaskField[0];
+    private static final ClassSecurityPlan EMPTY =
+        new ClassSecurityPlan(NO_SECURE_FIELDS, NO_SECURE_FIELDS, NO_MASK_FIELDS, null);
+    /**
+     * 记录摘要密钥版本的字段名，类型为Integer或int
+     */
+    private static final String DIGEST_VERSION_FIELD = "digestVersion";
+
+    private static final ClassValue<ClassSecurityPlan> PLANS = new ClassValue<ClassSecurityPlan>() {
+        @Override
+        protected ClassSecurityPlan computeValue(Class<?> type) {
+            Class<?> userClass = ClassUtils.getUserClass(type);
+            return userClass != type ? PLANS.get(userClass) : create(type);
+        }
+    };
+
+    private final SecureField[] secureFields;
+    private final SecureField[] decryptFields;
+    private final MaskField[] maskFields;
+    private final FieldAccessor digestVersionAccessor;
+
+    private ClassSecurityPlan(SecureField[] secureFields, SecureField[] decryptFields, MaskField[] maskFields,
+                              FieldAccessor digestVersionAccessor) {
+        this.secureFields = secureFields;
+        this.decryptFields = decryptFields;
+        this.maskFields = maskFields;
+        this.digestVersionAccessor = digestVersionAccessor;
+    }
+
+    /**
+     * 获取类的安全处理计划，代理类使用其原始类的计划
+     */
+    public static ClassSecurityPlan of(Class<?> type) {
+        return PLANS.get(type);
+    }
+
+    /**
+     * 需要加密或生成摘要的字段
+     */
+    public SecureField[] getSecureFields() {
+        return secureFields;
+    }
+
+    /**
+     * 需要解密的字段（同时带有@Decrypt和@Encrypt）
+     */
+    public SecureField[] getDecryptFields() {
+        return decryptFields;
+    }
+
+    /**
+     * 需要脱敏的字段
+     */
+    public MaskField[] getMaskFields() {
+        return maskFields;
+    }
+
+    public boolean hasSecureFields() {
+        return secureFields.length > 0;
+    }
+
+    public boolean hasDecryptFields() {
+        return decryptFields.length > 0;
+    }
+
+    public boolean hasMaskFields() {
+        return maskFields.length > 0;
+    }
+
+    /**
+     * 是否有记录摘要密钥版本的digestVersion字段
+     */
+    public boolean hasDigestVersionField() {
+        return digestVersionAccessor != null;
+    }
+
+    /**
+     * 写入摘要密钥版本
+     */
+    public void setDigestVersion(Object target, int version) {
+        digestVersionAccessor.set(target, version);
+    }
+
+    private static ClassSecurityPlan create(Class<?> type) {
+        if (type.isPrimitive() || type.isArray() || type.isInterface() || type.getName().startsWith("java.")) {
+            return EMPTY;
+        }
+        List<SecureField> secureFields = new ArrayList<>();
+        List<SecureField> decryptFields = new ArrayList<>();
+        List<MaskField> maskFields = new ArrayList<>();
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers()) || !field.getType().isAssignableFrom(String.class)) {
+                    continue;
+                }
+                boolean encrypt = field.getAnnotation(Encrypt.class) != null;
+                boolean decrypt = encrypt && field.getAnnotation(Decrypt.class) != null;
+                boolean digest = field.getAnnotation(Digest.class) != null;
+                Mask mask = field.getAnnotation(Mask.class);
+                if (encrypt || digest) {
+                    SecureField secureField = new SecureField(field, encrypt, decrypt, digest,
+                        digest ? findDigestField(type, field) : null);
+                    secureFields.add(secureField);
+                    if (decrypt) {
+                        decryptFields.add(secureField);
+                    }
+                }
+                if (mask != null) {
+                    maskFields.add(new MaskField(field, mask));
+                }
+            }
+        }
+        if (secureFields.isEmpty() && maskFields.isEmpty()) {
+            return EMPTY;
+        }
+        Field digestVersionField = null;
+        for (SecureField secureField : secureFields) {
+            if (secureField.hasDigestField()) {
+                digestVersionField = findDigestVersionField(type);
+                break;
+            }
+        }
+        return new ClassSecurityPlan(secureFields.toArray(NO_SECURE_FIELDS), decryptFields.toArray(NO_SECURE_FIELDS),
+            maskFields.toArray(NO_MASK_FIELDS), digestVersionField != null ? new FieldAccessor(digestVersionField) : null);
+    }
+
+    /**
+     * 在类及其父类中查找Integer或int类型的digestVersion字段，没有时不记录版本
+     */
+    private static Field findDigestVersionField(Class<?> type) {
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            try {
+                Field field = c.getDeclaredField(DIGEST_VERSION_FIELD);
+                if (field.getType() == Integer.class || field.getType() == int.class) {
+                    return field;
+                }
+                log.warn("Ignoring {}.{}: digest version must be Integer or int", type.getName(), DIGEST_VERSION_FIELD);
+                return null;
+            } catch (NoSuchFieldException e) {
+                // 继续在父类中查找
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 在类及其父类中查找{字段名}Digest字段
+     */
+    private static Field findDigestField(Class<?> type, Field field) {
+        String digestFieldName = field.getName() + "Digest";
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            try {
+                return c.getDeclaredField(digestFieldName);
+            } catch (NoSuchFieldException e) {
+                // 继续在父类中查找
+            }
+        }
+        log.error("No digest field found for: {}.{}", type.getName(), field.getName());
+        return null;
+    }
+
+    /**
+     * 需要加密、解密或生成摘要的字段
+     */
+    public static final class SecureField {
+        private final FieldAccessor accessor;
+        private final boolean encrypt;
+        private final boolean decrypt;
+        private final boolean digest;
+        private final FieldAccessor digestAccessor;
+
+        private SecureField(Field field, boolean encrypt, boolean decrypt, boolean digest, Field digestField) {
+            this.accessor = new FieldAccessor(field);
+            this.encrypt = encrypt;
+            this.decrypt = decrypt;
+            this.digest = digest;
+            this.digestAccessor = digestField != null ? new FieldAccessor(digestField) : null;
+        }
+
+        public String getName() {
+            return accessor.getName();
+        }
+
+        public boolean isEncrypt() {
+            return encrypt;
+        }
+
+        public boolean isDecrypt() {
+            return decrypt;
+        }
+
+        public boolean isDigest() {
+            return digest;
+        }
+
+        /**
+         * 是否找到了配对的摘要字段
+         */
+        public boolean hasDigestField() {
+            return digestAccessor != null;
+        }
+
+        /**
+         * 配对的摘要字段名，没有配对时返回null
+         */
+        public String getDigestFieldName() {
+            return digestAccessor != null ? digestAccessor.getName() : null;
+        }
+
+        public Object get(Object target) {
+            return accessor.get(target);
+        }
+
+        public void set(Object target, Object value) {
+            accessor.set(target, value);
+        }
+
+        /**
+         * 读取配对的摘要字段
+         */
+        public Object getDigest(Object target) {
+            return digestAccessor.get(target);
+        }
+
+        /**
+         * 写入配对的摘要字段
+         */
+        public void setDigest(Object target, String value) {
+            digestAccessor.set(target, value);
+        }
+    }
+
+    /**
+     * 需要脱敏的字段
+     */
+    public static final class MaskField {
+        private final FieldAccessor accessor;
+        private final Mask mask;
+
+        private MaskField(Field field, Mask mask) {
+            this.accessor = new FieldAccessor(field);
+            this.mask = mask;
+        }
+
+        public String getName() {
+            return accessor.getName();
+        }
+
+        public Mask getMask() {
+            return mask;
+        }
+
+        public Object get(Object target) {
+            return accessor.get(target);
+        }
+
+        public void set(Object target, Object value) {
+            accessor.set(target, value);
+        }
+    }
+}
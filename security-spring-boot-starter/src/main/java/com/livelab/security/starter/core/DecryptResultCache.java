@@ -0,0 +1,185 @@
+package com.livelab.security.starter.core;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 密文到原文的解密结果缓存
+ *
+ * 同一密钥下SM4/ECB的密文与原文一一对应，且密钥记录不会被修改，
+ * 因此热点行（个人资料、重复的getById）的解密结果可以直接复用。
+ *
+ * 设计说明：
+ * 1. 按密文字符串的哈希分段，每段是一个按访问顺序排列的LinkedHashMap，段内加锁，段间互不影响
+ * 2. 总条目数和存活时间（TTL）都有上界，超出容量时淘汰段内最久未访问的条目
+ * 3. 原文以UTF-8字节数组保存，条目被淘汰、过期或清空时将字节数组清零，缩短明文在内存中的停留时间
+ *    （返回给调用方的String仍在堆上，由调用方负责其生命周期）
+ * 4. 统计命中、未命中、淘汰次数和缓存中原文占用的字节数
+ *
+ * AES-GCM等随机化的密文每次加密都不同，缓存只对同一密文的重复读取有效
+ */
+public class DecryptResultCache {
+    private static final int SEGMENTS = 16;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final long ttlMillis;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+
+    /**
+     * @param maxEntries 最大缓存条目数，按段均分后向上取整
+     * @param ttlSeconds 条目的存活时间（秒）
+     */
+    public DecryptResultCache(int maxEntries, long ttlSeconds) {
+        int segmentCapacity = Math.max(1, (maxEntries + SEGMENTS - 1) / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(segmentCapacity);
+        }
+        this.ttlMillis = ttlSeconds * 1000L;
+    }
+
+    /**
+     * 查找密文对应的原文
+     *
+     * @param encryptedValue 加密内容
+     * @return 原文，未命中或已过期时返回null
+     */
+    public String get(String encryptedValue) {
+        Segment segment = segmentFor(encryptedValue);
+        long now = System.currentTimeMillis();
+        synchronized (segment) {
+            Entry entry = segment.entries.get(encryptedValue);
+            if (entry != null) {
+                if (entry.expireAt > now) {
+                    hits.increment();
+                    // 在锁内解码，避免并发淘汰清零字节数组
+                    return new String(entry.plaintext, StandardCharsets.UTF_8);
+                }
+                segment.entries.remove(encryptedValue);
+                release(entry);
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * 写入解密结果
+     *
+     * @param encryptedValue 加密内容
+     * @param plaintext 解密后的原文
+     */
+    public void put(String encryptedValue, String plaintext) {
+        Entry created = new Entry(plaintext.getBytes(StandardCharsets.UTF_8), System.currentTimeMillis() + ttlMillis);
+        Segment segment = segmentFor(encryptedValue);
+        synchronized (segment) {
+            Entry previous = segment.entries.put(encryptedValue, created);
+            bytes.add(created.plaintext.length);
+            if (previous != null) {
+                wipe(previous);
+            }
+            Iterator<Entry> eldest = segment.entries.values().iterator();
+            while (segment.entries.size() > segment.capacity && eldest.hasNext()) {
+                Entry entry = eldest.next();
+                eldest.remove();
+                release(entry);
+            }
+        }
+    }
+
+    /**
+     * 清空缓存，并将所有原文字节清零
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                for (Entry entry : segment.entries.values()) {
+                    wipe(entry);
+                }
+                segment.entries.clear();
+            }
+        }
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * 命中率，尚无访问时为0
+     */
+    public double getHitRatio() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    /**
+     * 因容量不足或过期被淘汰的条目数
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * 缓存中原文占用的字节数
+     */
+    public long getByteSize() {
+        return bytes.sum();
+    }
+
+    public int getSize() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.entries.size();
+            }
+        }
+        return size;
+    }
+
+    private Segment segmentFor(String encryptedValue) {
+        int h = encryptedValue.hashCode();
+        return segments[(h ^ (h >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    private void release(Entry entry) {
+        evictions.increment();
+        wipe(entry);
+    }
+
+    private void wipe(Entry entry) {
+        bytes.add(-entry.plaintext.length);
+        Arrays.fill(entry.plaintext, (byte) 0);
+    }
+
+    private static final class Segment {
+        private final int capacity;
+        private final Map<String, Entry> entries;
+
+        private Segment(int capacity) {
+            this.capacity = capacity;
+            this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        }
+    }
+
+    private static final class Entry {
+        private final byte[] plaintext;
+        private final long expireAt;
+
+        private Entry(byte[] plaintext, long expireAt) {
+            this.plaintext = plaintext;
+            this.expireAt = expireAt;
+        }
+    }
+}
@@ -0,0 +1,694 @@
+package com.livelab.security.starter.core;
+
+import com.baomidou.mybatisplus.core.metadata.IPage;
+import com.livelab.security.starter.codec.SecurityCodec;
+import com.livelab.security.starter.codec.SecurityCodecs;
+import com.livelab.security.starter.core.ClassSecurityPlan.SecureField;
+import com.livelab.security.starter.exception.SecurityException;
+import com.livelab.security.starter.model.KeyInfo;
+import com.livelab.security.starter.util.CryptoUtil;
+import com.livelab.security.starter.util.DigestUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 实体的加密、摘要和解密处理
+ *
+ * 由DataSecurityAspect和DataSecurityInterceptor共用，两种集成方式对实体的处理完全一致：
+ * 1. 写入前对@Encrypt字段加密，对@Digest字段生成摘要
+ * 2. 查询后对同时带有@Decrypt和@Encrypt的字段解密，开启延迟解密时替换为代理
+ * 3. 批量处理时整批共用一次批量加解密，大结果集按阈值并行解密
+ * 4. encryptGraph/decryptGraph通过SecureObjectWalker处理嵌套对象，整个对象图作为一批处理
+ *
+ * 摘要密钥版本：类中有digestVersion字段时，本次写入重新生成了全部摘要才写入当前版本，
+ * 用于在轮换索引密钥后找出仍使用旧版本摘要的行。updateById等更新不写入null字段，
+ * 任一@Digest字段为null时数据库中可能仍是旧版本的摘要，不记录版本；只有确定为新增时null字段才不影响判断
+ *
+ * 重复处理的防护：
+ * 1. 加密前按密文头部跳过已经是密文的值（如读出后原样更新的实体），也不对密文计算摘要
+ * 2. 调用方通过beginChain/endChain界定一条调用链（如Service方法内嵌套的Mapper调用），
+ *    链内已解密的实体按对象标识记录，再次经过时不再扫描；实体被重新加密后移除记录
+ */
+@Slf4j
+public class EntitySecurityProcessor {
+    private final CryptoUtil cryptoUtil;
+    private final DigestUtil digestUtil;
+    private final ParallelDecryptor parallelDecryptor;
+    private final LazyDecryptor lazyDecryptor;
+    private final ThreadLocal<Chain> chains = ThreadLocal.withInitial(Chain::new);
+
+    /**
+     * @param cryptoUtil 加密工具
+     * @param digestUtil 摘要工具
+     * @param parallelDecryptor 大结果集的并行解密执行器
+     * @param lazyDecryptor 延迟解密代理创建器，为null时查询结果立即解密
+     */
+    public EntitySecurityProcessor(CryptoUtil cryptoUtil, DigestUtil digestUtil, ParallelDecryptor parallelDecryptor,
+                                   LazyDecryptor lazyDecryptor) {
+        this.cryptoUtil = cryptoUtil;
+        this.digestUtil = digestUtil;
+        this.parallelDecryptor = parallelDecryptor;
+        this.lazyDecryptor = lazyDecryptor;
+    }
+
+    /**
+     * 开始一条调用链，可以嵌套，必须与endChain成对调用
+     */
+    public void beginChain() {
+        chains.get().depth++;
+    }
+
+    /**
+     * 结束一条调用链，最外层结束时清除链内的实体记录
+     */
+    public void endChain() {
+        Chain chain = chains.get();
+        if (--chain.depth == 0) {
+            chain.decrypted = null;
+        }
+    }
+
+    /**
+     * 处理单个查询结果的解密
+     * 开启延迟解密且对象可以代理时返回代理，字段在首次读取时解密；否则就地解密并返回原对象
+     *
+     * @param obj 查询结果
+     * @return 解密后的对象或延迟解密代理
+     */
+    public Object decryptResult(Object obj) {
+        if (lazyDecryptor != null && lazyDecryptor.isWrappable(obj)) {
+            return lazyDecryptor.wrap(obj);
+        }
+        decrypt(obj);
+        return obj;
+    }
+
+    /**
+     * 处理对象的加密和摘要
+     * - 按类的安全处理计划，对带有@Encrypt注解的字段进行加密
+     * - 对带有@Digest注解的字段生成摘要
+     * - 摘要会存储在同名的{字段名}Digest字段中
+     * - 延迟解密代理中尚未解密的字段保持原密文，不重复加密
+     * - 已经是密文的字段不重复加密，也不计算摘要
+     * - 类有编译期生成的SecurityCodec时直接调用，不再反射读写字段
+     *
+     * @param obj 需要处理的对象
+     */
+    public void encrypt(Object obj) {
+        encrypt(obj, false);
+    }
+
+    private void encrypt(Object obj, boolean insert) {
+        if (obj == null) {
+            return;
+        }
+        chains.get().forget(obj);
+        SecurityCodec<Object> codec = SecurityCodecs.find(obj.getClass());
+        if (codec != null) {
+            ClassSecurityPlan plan = ClassSecurityPlan.of(obj.getClass());
+            boolean stampVersion = isDigestComplete(obj, plan, insert);
+            List<String> values = new ArrayList<>();
+            boolean collected = collectEncrypt(codec, obj, values, false);
+            try {
+                codec.digest(obj, digestUtil);
+                if (stampVersion) {
+                    plan.setDigestVersion(obj, digestUtil.getActiveVersion());
+                }
+            } catch (Exception e) {
+                log.error("Error generating digest for entity: " + obj.getClass().getName(), e);
+            }
+            if (collected && !values.isEmpty()) {
+                try {
+                    codec.applyEncrypt(obj, cryptoUtil.encryptAll(values).iterator());
+                } catch (Exception e) {
+                    log.error("Error encrypting entity: " + obj.getClass().getName(), e);
+                }
+            }
+            return;
+        }
+        ClassSecurityPlan plan = ClassSecurityPlan.of(obj.getClass());
+        if (!plan.hasSecureFields()) {
+            return;
+        }
+
+        boolean stampVersion = isDigestComplete(obj, plan, insert);
+        for (SecureField field : plan.getSecureFields()) {
+            try {
+                Object value = field.get(obj);
+                if (value instanceof String) {
+                    String strValue = (String) value;
+                    if (isPendingCipherText(obj, field) || isCipherText(field, strValue)) {
+                        continue;
+                    }
+
+                    // 处理加密：使用@Encrypt注解指定的密钥类型进行加密
+                    if (field.isEncrypt()) {
+                        field.set(obj, cryptoUtil.encrypt(strValue));
+                    }
+
+                    // 处理摘要：生成摘要并存储在对应的摘要字段中
+                    if (field.isDigest() && field.hasDigestField()) {
+                        field.setDigest(obj, digestUtil.digest(strValue));
+                    }
+                }
+            } catch (Exception e) {
+                stampVersion = false;
+                log.error("Error processing field: " + field.getName(), e);
+            }
+        }
+        if (stampVersion) {
+            plan.setDigestVersion(obj, digestUtil.getActiveVersion());
+        }
+    }
+
+    /**
+     * 批量处理对象的加密和摘要
+     * - 所有待生成摘要的字段汇总后调用一次批量摘要，整批共用当前线程的摘要状态
+     * - 所有待加密字段的值汇总后调用一次批量加密，整批共用一个密钥和一个Cipher
+     * - 有SecurityCodec的对象由编解码器收集明文，与其他对象一起批量摘要、批量加密后按相同顺序写回
+     *
+     * @param items 需要处理的对象集合
+     */
+    public void encryptAll(Collection<?> items) {
+        encryptAll(items, null, false);
+    }
+
+    /**
+     * 使用指定的密钥快照批量处理对象的加密和摘要，其余规则与{@link #encryptAll(Collection)}相同
+     *
+     * 非严格模式下单个字段或整批的失败只记录日志，与切面的其他写入路径一致；
+     * 严格模式下任何失败都抛出异常，调用方不会把未加密或摘要缺失的实体写入数据库
+     *
+     * @param items 需要处理的对象集合
+     * @param keyInfo 通过{@link CryptoUtil#currentKey()}获取的密钥快照，为null时使用当前密钥
+     * @param strict 是否在失败时抛出异常
+     * @throws SecurityException 严格模式下加密或生成摘要失败时抛出
+     */
+    public void encryptAll(Collection<?> items, KeyInfo keyInfo, boolean strict) {
+        encryptAll(items, keyInfo, strict, false);
+    }
+
+    private void encryptAll(Collection<?> items, KeyInfo keyInfo, boolean strict, boolean insert) {
+        List<Object> targets = new ArrayList<>();
+        List<SecureField> targetFields = new ArrayList<>();
+        List<String> values = new ArrayList<>();
+        List<Object> codecTargets = new ArrayList<>();
+        List<SecurityCodec<Object>> codecs = new ArrayList<>();
+        List<String> codecValues = new ArrayList<>();
+        List<Object> digestTargets = new ArrayList<>();
+        List<SecureField> digestFields = new ArrayList<>();
+        List<String> digestValues = new ArrayList<>();
+        List<Object> codecDigestTargets = new ArrayList<>();
+        List<SecurityCodec<Object>> digestCodecs = new ArrayList<>();
+        List<String> codecDigestValues = new ArrayList<>();
+        List<Object> versionTargets = new ArrayList<>();
+        Chain chain = chains.get();
+
+        for (Object obj : items) {
+            if (obj == null) {
+                continue;
+            }
+            chain.forget(obj);
+            SecurityCodec<Object> codec = SecurityCodecs.find(obj.getClass());
+            if (codec != null) {
+                boolean stampVersion = isDigestComplete(obj, ClassSecurityPlan.of(obj.getClass()), insert);
+                if (collectDigest(codec, obj, codecDigestValues, strict)) {
+                    codecDigestTargets.add(obj);
+                    digestCodecs.add(codec);
+                    if (stampVersion) {
+                        versionTargets.add(obj);
+                    }
+                }
+                if (collectEncrypt(codec, obj, codecValues, strict)) {
+                    codecTargets.add(obj);
+                    codecs.add(codec);
+                }
+                continue;
+            }
+            ClassSecurityPlan plan = ClassSecurityPlan.of(obj.getClass());
+            boolean stampVersion = isDigestComplete(obj, plan, insert);
+            for (SecureField field : plan.getSecureFields()) {
+                try {
+                    Object value = field.get(obj);
+                    if (value instanceof String) {
+                        String strValue = (String) value;
+                        if (isPendingCipherText(obj, field) || isCipherText(field, strValue)) {
+                            continue;
+                        }
+
+                        // 收集需要加密的字段，稍后统一加密
+                        if (field.isEncrypt()) {
+                            targets.add(obj);
+                            targetFields.add(field);
+                            values.add(strValue);
+                        }
+
+                        // 收集需要生成摘要的字段，稍后统一计算
+                        if (field.isDigest() && field.hasDigestField()) {
+                            digestTargets.add(obj);
+                            digestFields.add(field);
+                            digestValues.add(strValue);
+                        }
+                    }
+                } catch (Exception e) {
+                    stampVersion = false;
+                    fail(strict, "Error processing field: " + field.getName(), e);
+                }
+            }
+            if (stampVersion) {
+                versionTargets.add(obj);
+            }
+        }
+
+        int digestFieldCount = digestValues.size();
+        digestValues.addAll(codecDigestValues);
+        boolean digested = true;
+        if (!digestValues.isEmpty()) {
+            try {
+                List<String> digests = digestUtil.digestAll(digestValues);
+                for (int i = 0; i < digestFieldCount; i++) {
+                    digestFields.get(i).setDigest(digestTargets.get(i), digests.get(i));
+                }
+                Iterator<String> codecDigests = digests.subList(digestFieldCount, digests.size()).iterator();
+                for (int i = 0; i < codecDigestTargets.size(); i++) {
+                    digestCodecs.get(i).applyDigest(codecDigestTargets.get(i), codecDigests);
+                }
+            } catch (Exception e) {
+                digested = false;
+                fail(strict, "Error digesting " + digestValues.size() + " fields in batch", e);
+            }
+        }
+        if (digested && !versionTargets.isEmpty()) {
+            // 新增时@Digest字段都为null的对象没有摘要需要计算，同样记录当前版本
+            int version = digestUtil.getActiveVersion();
+            for (Object obj : versionTargets) {
+                ClassSecurityPlan.of(obj.getClass()).setDigestVersion(obj, version);
+            }
+        }
+
+        int fieldCount = values.size();
+        values.addAll(codecValues);
+        if (values.isEmpty()) {
+            return;
+        }
+        try {
+            List<String> encryptedValues = keyInfo != null
+                ? cryptoUtil.encryptAll(values, keyInfo) : cryptoUtil.encryptAll(values);
+            for (int i = 0; i < fieldCount; i++) {
+                targetFields.get(i).set(targets.get(i), encryptedValues.get(i));
+            }
+            Iterator<String> codecResults = encryptedValues.subList(fieldCount, encryptedValues.size()).iterator();
+            for (int i = 0; i < codecTargets.size(); i++) {
+                codecs.get(i).applyEncrypt(codecTargets.get(i), codecResults);
+            }
+        } catch (Exception e) {
+            fail(strict, "Error encrypting " + values.size() + " fields in batch", e);
+        }
+    }
+
+    /**
+     * 处理加密或摘要失败：严格模式下抛出异常中止写入，否则记录日志后继续
+     */
+    private static void fail(boolean strict, String message, Exception e) {
+        if (strict) {
+            throw e instanceof SecurityException ? (SecurityException) e : new SecurityException(message, e);
+        }
+        log.error(message, e);
+    }
+
+    /**
+     * 通过编解码器收集对象中待加密的明文
+     * 收集失败时丢弃该对象已收集的值，保证写回顺序不错位；严格模式下抛出异常
+     *
+     * @return 收集成功，需要写回密文时返回true
+     */
+    private boolean collectEncrypt(SecurityCodec<Object> codec, Object obj, List<String> values, boolean strict) {
+        int mark = values.size();
+        try {
+            codec.collectEncrypt(obj, values);
+        } catch (Exception e) {
+            values.subList(mark, values.size()).clear();
+            fail(strict, "Error processing entity: " + obj.getClass().getName(), e);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 通过编解码器收集对象中待生成摘要的明文，规则与{@link #collectEncrypt}相同
+     * 摘要失败不影响加密
+     *
+     * @return 收集成功，需要写回摘要时返回true
+     */
+    private boolean collectDigest(SecurityCodec<Object> codec, Object obj, List<String> values, boolean strict) {
+        int mark = values.size();
+        try {
+            codec.collectDigest(obj, values);
+        } catch (Exception e) {
+            values.subList(mark, values.size()).clear();
+            fail(strict, "Error generating digest for entity: " + obj.getClass().getName(), e);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 判断本次写入是否会用当前密钥重新生成对象的全部摘要，只有这时才能记录摘要密钥版本
+     * 部分更新时值为null的字段、已经是密文而跳过的字段仍保留旧版本的摘要，不能把整行标记为新版本；
+     * 新增时值为null的字段（未填写的可选字段）没有摘要，不影响判断
+     *
+     * @param insert 是否确定为新增语句
+     */
+    private boolean isDigestComplete(Object obj, ClassSecurityPlan plan, boolean insert) {
+        if (!plan.hasDigestVersionField()) {
+            return false;
+        }
+        for (SecureField field : plan.getSecureFields()) {
+            if (field.isDigest() && field.hasDigestField()) {
+                Object value = field.get(obj);
+                if (value == null && insert) {
+                    continue;
+                }
+                if (!(value instanceof String) || isPendingCipherText(obj, field) || isCipherText(field, (String) value)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 判断字段是否为延迟解密代理中尚未解密的密文
+     * 这类字段保持数据库中的原值写回，同时不再对其延迟解密，避免持久层通过getter读到明文
+     */
+    private boolean isPendingCipherText(Object obj, SecureField field) {
+        return obj instanceof LazyDecryptable && field.isEncrypt()
+            && ((LazyDecryptable) obj).skipPendingDecrypt(field.getName());
+    }
+
+    /**
+     * 判断加密字段的值是否已经是密文
+     * 只带@Digest的字段存储的是明文，不做判断
+     */
+    private static boolean isCipherText(SecureField field, String value) {
+        return field.isEncrypt() && CryptoUtil.isEncrypted(value);
+    }
+
+    /**
+     * 批量处理对象的解密
+     * - 开启延迟解密时，列表中的实体就地替换为代理，只有无法代理的元素立即解密
+     * - 当前调用链中已经解密过的实体跳过
+     * - 结果数量超过并行阈值时拆分为多个分片并行解密，否则在当前线程解密
+     *
+     * @param items 需要解密的对象集合
+     */
+    public void decryptAll(Collection<?> items) {
+        if (items.isEmpty()) {
+            return;
+        }
+        if (lazyDecryptor != null && items instanceof List) {
+            items = lazyDecryptor.wrapAll((List<?>) items);
+            if (items.isEmpty()) {
+                return;
+            }
+        }
+        decryptEntities(items);
+    }
+
+    /**
+     * 处理对象图的加密和摘要
+     * 参数可以是实体、嵌套实体的DTO或任意层次的Collection、Map、Optional、数组和IPage，
+     * 图中所有带有@Encrypt或@Digest字段的对象汇总后一次批量加密
+     *
+     * @param arg 需要处理的参数
+     * @see SecureObjectWalker
+     */
+    public void encryptGraph(Object arg) {
+        encryptGraph(arg, false);
+    }
+
+    /**
+     * 处理对象图的加密和摘要，规则与{@link #encryptGraph(Object)}相同
+     * 调用方确定是新增语句时（如MyBatis拦截器中的INSERT），@Digest字段为null的实体同样记录摘要密钥版本
+     *
+     * @param arg 需要处理的参数
+     * @param insert 是否确定为新增语句
+     */
+    public void encryptGraph(Object arg, boolean insert) {
+        List<Object> entities = SecureObjectWalker.collect(arg, SecureObjectWalker.Target.ENCRYPT);
+        if (entities.size() == 1) {
+            encrypt(entities.get(0), insert);
+        } else if (!entities.isEmpty()) {
+            encryptAll(entities, null, false, insert);
+        }
+    }
+
+    /**
+     * 处理对象图的解密
+     * - 开启延迟解密时，顶层的实体、List中的实体和IPage中的记录替换为代理
+     * - 图中其余带有@Decrypt字段的对象（如DTO中嵌套的实体）汇总后立即解密
+     *
+     * @param result 查询结果
+     * @return 解密后的结果，顶层实体可能被替换为延迟解密代理
+     * @see SecureObjectWalker
+     */
+    public Object decryptGraph(Object result) {
+        if (result == null) {
+            return null;
+        }
+        if (lazyDecryptor != null) {
+            if (result instanceof List) {
+                lazyDecryptor.wrapAll((List<?>) result);
+            } else if (result instanceof IPage) {
+                lazyDecryptor.wrapAll(((IPage<?>) result).getRecords());
+            } else {
+                // 代理复制了原实体的嵌套对象，仍然需要继续遍历
+                result = lazyDecryptor.wrap(result);
+            }
+        }
+        if (!SecureObjectWalker.mayContain(result, SecureObjectWalker.Target.DECRYPT)) {
+            return result;
+        }
+        decryptEntities(SecureObjectWalker.collect(result, SecureObjectWalker.Target.DECRYPT));
+        return result;
+    }
+
+    /**
+     * 立即解密对象，跳过当前调用链中已经解密过的对象，超过并行阈值时并行解密
+     *
+     * @param items 需要解密的对象
+     */
+    private void decryptEntities(Collection<?> items) {
+        if (items.isEmpty()) {
+            return;
+        }
+        Chain chain = chains.get();
+        List<?> list;
+        if (chain.depth > 0) {
+            // 在当前线程中过滤，并行解密的工作线程看不到调用链
+            List<Object> pending = new ArrayList<>(items.size());
+            for (Object item : items) {
+                if (item != null && chain.markDecrypted(item)) {
+                    pending.add(item);
+                }
+            }
+            list = pending;
+        } else {
+            list = items instanceof List ? (List<?>) items : new ArrayList<>(items);
+        }
+        if (list.isEmpty()) {
+            return;
+        }
+        parallelDecryptor.forEachChunk(list, this::decryptChunk);
+    }
+
+    /**
+     * 解密一个分片中的对象
+     * 所有待解密字段的值汇总后调用一次批量解密，按密钥ID分组共用密钥和Cipher
+     * 有SecurityCodec的对象由编解码器收集密文，解密后按相同顺序写回
+     *
+     * @param items 需要解密的对象
+     */
+    private void decryptChunk(List<?> items) {
+        List<Object> targets = new ArrayList<>();
+        List<SecureField> targetFields = new ArrayList<>();
+        List<String> values = new ArrayList<>();
+        List<Object> codecTargets = new ArrayList<>();
+        List<SecurityCodec<Object>> codecs = new ArrayList<>();
+        List<String> codecValues = new ArrayList<>();
+
+        for (Object obj : items) {
+            if (obj == null) {
+                continue;
+            }
+            SecurityCodec<Object> codec = SecurityCodecs.find(obj.getClass());
+            if (codec != null) {
+                if (collectDecrypt(codec, obj, codecValues)) {
+                    codecTargets.add(obj);
+                    codecs.add(codec);
+                }
+                continue;
+            }
+            for (SecureField field : ClassSecurityPlan.of(obj.getClass()).getDecryptFields()) {
+                try {
+                    Object value = field.get(obj);
+                    if (value instanceof String && CryptoUtil.isEncrypted((String) value)) {
+                        targets.add(obj);
+                        targetFields.add(field);
+                        values.add((String) value);
+                    }
+                } catch (Exception e) {
+                    log.error("Error decrypting field: " + field.getName(), e);
+                }
+            }
+        }
+
+        int fieldCount = values.size();
+        values.addAll(codecValues);
+        if (values.isEmpty()) {
+            return;
+        }
+        try {
+            List<String> decryptedValues = cryptoUtil.decryptAll(values);
+            for (int i = 0; i < fieldCount; i++) {
+                targetFields.get(i).set(targets.get(i), decryptedValues.get(i));
+            }
+            Iterator<String> codecResults = decryptedValues.subList(fieldCount, decryptedValues.size()).iterator();
+            for (int i = 0; i < codecTargets.size(); i++) {
+                codecs.get(i).applyDecrypt(codecTargets.get(i), codecResults);
+            }
+        } catch (Exception e) {
+            // 批量解密失败时逐个解密，避免个别损坏的数据影响整批结果
+            log.error("Error decrypting {} fields in batch, falling back to single decryption", values.size(), e);
+            for (int i = 0; i < fieldCount; i++) {
+                try {
+                    targetFields.get(i).set(targets.get(i), cryptoUtil.decrypt(values.get(i)));
+                } catch (Exception ex) {
+                    log.error("Error decrypting field: " + targetFields.get(i).getName(), ex);
+                }
+            }
+            if (!codecTargets.isEmpty()) {
+                Iterator<String> codecResults = decryptEach(values.subList(fieldCount, values.size())).iterator();
+                for (int i = 0; i < codecTargets.size(); i++) {
+                    codecs.get(i).applyDecrypt(codecTargets.get(i), codecResults);
+                }
+            }
+        }
+    }
+
+    /**
+     * 处理对象的解密
+     * - 按类的安全处理计划，处理同时带有@Decrypt和@Encrypt注解的字段
+     * - 解析加密字符串中的密钥类型和实际加密内容
+     * - 使用对应的密钥进行解密
+     * 
+     * 加密格式：$密钥类型$加密内容
+     * 例如：$PHONE_KEY$encrypted_content
+     *
+     * @param obj 需要解密的对象
+     */
+    public void decrypt(Object obj) {
+        if (obj == null || !chains.get().markDecrypted(obj)) {
+            return;
+        }
+        SecurityCodec<Object> codec = SecurityCodecs.find(obj.getClass());
+        if (codec != null) {
+            List<String> values = new ArrayList<>();
+            if (collectDecrypt(codec, obj, values) && !values.isEmpty()) {
+                codec.applyDecrypt(obj, decryptEach(values).iterator());
+            }
+            return;
+        }
+
+        for (SecureField field : ClassSecurityPlan.of(obj.getClass()).getDecryptFields()) {
+            try {
+                Object value = field.get(obj);
+                if (value instanceof String) {
+                    String encryptedValue = (String) value;
+                    if (CryptoUtil.isEncrypted(encryptedValue)) {
+                        // 使用对应的密钥进行解密
+                        field.set(obj, cryptoUtil.decrypt(encryptedValue));
+                    }
+                }
+            } catch (Exception e) {
+                log.error("Error decrypting field: " + field.getName(), e);
+            }
+        }
+    }
+
+    /**
+     * 通过编解码器收集对象中待解密的密文
+     * 收集失败时丢弃该对象已收集的值，保证写回顺序不错位
+     *
+     * @return 收集成功，需要写回明文时返回true
+     */
+    private boolean collectDecrypt(SecurityCodec<Object> codec, Object obj, List<String> values) {
+        int mark = values.size();
+        try {
+            codec.collectDecrypt(obj, values);
+            return true;
+        } catch (Exception e) {
+            values.subList(mark, values.size()).clear();
+            log.error("Error decrypting entity: " + obj.getClass().getName(), e);
+            return false;
+        }
+    }
+
+    /**
+     * 逐个解密，解密失败的值保持原密文，供编解码器按顺序写回
+     *
+     * @param values 密文
+     * @return 与密文一一对应的解密结果
+     */
+    private List<String> decryptEach(List<String> values) {
+        List<String> results = new ArrayList<>(values.size());
+        for (String value : values) {
+            try {
+                results.add(cryptoUtil.decrypt(value));
+            } catch (Exception e) {
+                log.error("Error decrypting value", e);
+                results.add(value);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 一条调用链中的处理记录，只在所属线程中访问
+     */
+    private static final class Chain {
+        private int depth;
+        private Set<Object> decrypted;
+
+        /**
+         * 记录已解密的实体，不在调用链中时不记录
+         *
+         * @return 实体需要解密时返回true，已在当前调用链中解密过时返回false
+         */
+        private boolean markDecrypted(Object obj) {
+            if (depth == 0) {
+                return true;
+            }
+            if (decrypted == null) {
+                decrypted = Collections.newSetFromMap(new IdentityHashMap<>());
+            }
+            return decrypted.add(obj);
+        }
+
+        /**
+         * 实体即将被加密，之后再次查询到时需要重新解密
+         */
+        private void forget(Object obj) {
+            if (decrypted != null) {
+                decrypted.remove(obj);
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.livelab.security.starter.core;
+
+import com.livelab.security.starter.exception.SecurityException;
+
+import java.lang.reflect.Field;
+
+/**
+ * 预先绑定的字段读写器，在分析类时创建，调用时不再做可访问性设置和注解查找
+ *
+ * 实现说明：
+ * 1. 绑定的是字段而不是getter/setter方法。延迟解密代理会拦截getter/setter，
+ *    通过方法读写会触发解密或改变字段状态，而切面需要读写字段的原始值
+ * 2. 使用已setAccessible的Field读写。JDK 8~17中其底层是基于Unsafe偏移量的访问器，
+ *    JDK 18起由JDK自身改为基于MethodHandle实现（JEP 416）；
+ *    而保存在实例字段中的MethodHandle不是常量，JIT无法内联，
+ *    LambdaMetafactory只能绑定方法，同一调用点上多个生成类也会变为megamorphic。
+ *    对比见benchmarks模块的FieldAccessorBenchmark：数组中的MethodHandle与Field相当，LambdaMetafactory更慢，
+ *    只有static final的MethodHandle明显更快，这一情形由编译期生成的SecurityCodec覆盖
+ * 3. 相比直接使用Field，包装多一次引用读取：三个字段各读写一次为33.1±5.8ns对28.7±4.7ns，在误差范围内，
+ *    约合每次访问1ns，而单个字段的加密+解密约1.3~1.8µs（CipherEngineBenchmark）。
+ *    保留包装以便在分析类时统一setAccessible，并把受检的IllegalAccessException统一转换为SecurityException
+ */
+final class FieldAccessor {
+    private final Field field;
+
+    FieldAccessor(Field field) {
+        field.setAccessible(true);
+        this.field = field;
+    }
+
+    String getName() {
+        return field.getName();
+    }
+
+    Object get(Object target) {
+        try {
+            return field.get(target);
+        } catch (IllegalAccessException e) {
+            throw new SecurityException("Cannot read field: " + field.getName(), e);
+        }
+    }
+
+    void set(Object target, Object value) {
+        try {
+            field.set(target, value);
+        } catch (IllegalAccessException e) {
+            throw new SecurityException("Cannot write field: " + field.getName(), e);
+        }
+    }
+}
@@ -11,42 +11,238 @@ import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
 
 @Slf4j
 public class KeyManager {
     private final SecurityProperties properties;
     private final SecurityKeyMapper securityKeyMapper;
+    /**
+     * 集群协调轮换的租约，为null时每个节点独立轮换密钥
+     */
+    private final KeyRotationLease rotationLease;
     private static final String GLOBAL_KEY_TYPE = "GLOBAL_KEY";
     private static final long KEY_EXPIRE_MINUTES = 2L;
-    private volatile String currentKey;
+    /**
+     * 协调模式下等待租约持有者生成密钥时的重试间隔
+     */
+    private static final long FOLLOWER_RETRY_INTERVAL_MILLIS = 200L;
+
+    /**
+     * 当前用于加密的密钥快照
+     * 快照不可变，通过volatile引用整体替换，读路径无锁且不访问数据库
+     */
+    private volatile ActiveKey activeKey;
+
+    /**
+     * 正在进行的同步加载，快照失效时只有发起加载的线程访问数据库，其他线程等待其结果
+     * 在对象锁内读写；等待租约持有者发布密钥可能持续一个租约时长，加载本身不持有对象锁
+     */
+    private CompletableFuture<ActiveKey> pendingLoad;
     
     public KeyManager(SecurityProperties properties, SecurityKeyMapper securityKeyMapper) {
+        this(properties, securityKeyMapper, null);
+    }
+
+    /**
+     * @param properties 安全模块配置
+     * @param securityKeyMapper 密钥数据访问接口
+     * @param rotationLease 集群协调轮换租约，为null时使用节点独立轮换
+     */
+    public KeyManager(SecurityProperties properties, SecurityKeyMapper securityKeyMapper, KeyRotationLease rotationLease) {
         this.properties = properties;
         this.securityKeyMapper = securityKeyMapper;
+        this.rotationLease = rotationLease;
     }
 
-    @Transactional
+    /**
+     * 获取当前用于加密的密钥
+     * - 内存中的密钥快照在有效期内直接返回，不访问数据库
+     * - 快照缺失或已过期时（例如刚启动、后台刷新未及时执行），同步从数据库加载
+     *
+     * @return 当前有效的密钥信息
+     */
     public KeyInfo getKeyInfo() {
-        // 不再区分keyType，统一使用全局密钥
-        if (currentKey != null) {
-            // 检查当前密钥是否在数据库中仍然有效
-            SecurityKey securityKey = securityKeyMapper.selectOne(
-                new LambdaQueryWrapper<SecurityKey>()
-                    .eq(SecurityKey::getKeyType, GLOBAL_KEY_TYPE)
-                    .eq(SecurityKey::getKeyValue, currentKey)
-                    .eq(SecurityKey::getStatus, 1)
-                    .le(SecurityKey::getEffectiveTime, LocalDateTime.now())
-                    .ge(SecurityKey::getExpiryTime, LocalDateTime.now())
-                    .last("LIMIT 1")
-            );
+        ActiveKey snapshot = activeKey;
+        if (snapshot != null && snapshot.isValidAt(System.currentTimeMillis())) {
+            return snapshot.keyInfo;
+        }
+        return reloadActiveKey();
+    }
+
+    /**
+     * 同步加载当前有效密钥，多个线程同时发现快照失效时只有一个线程访问数据库，其他线程等待同一个结果
+     * 加载在对象锁之外进行，协调模式下等待租约持有者时不阻塞后台轮换和清理任务
+     */
+    private KeyInfo reloadActiveKey() {
+        CompletableFuture<ActiveKey> load;
+        boolean loader;
+        synchronized (this) {
+            ActiveKey snapshot = activeKey;
+            if (snapshot != null && snapshot.isValidAt(System.currentTimeMillis())) {
+                return snapshot.keyInfo;
+            }
+            loader = pendingLoad == null;
+            if (loader) {
+                pendingLoad = new CompletableFuture<>();
+            }
+            load = pendingLoad;
+        }
+        if (loader) {
+            return loadActiveKey(load).keyInfo;
+        }
+        try {
+            return load.join().keyInfo;
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    /**
+     * 发起加载的线程从数据库读取或生成密钥，完成后唤醒等待的线程
+     */
+    private ActiveKey loadActiveKey(CompletableFuture<ActiveKey> load) {
+        ActiveKey next;
+        try {
+            // 从数据库获取最新的有效密钥，没有时生成或等待租约持有者发布
+            SecurityKey securityKey = selectLatestValidKey();
+            if (securityKey == null) {
+                securityKey = rotationLease == null ? generateAndSaveNewKey() : awaitCoordinatedKey();
+            }
+            synchronized (this) {
+                next = activate(securityKey);
+                pendingLoad = null;
+            }
+        } catch (RuntimeException | Error e) {
+            synchronized (this) {
+                pendingLoad = null;
+            }
+            load.completeExceptionally(e);
+            throw e;
+        }
+        load.complete(next);
+        return next;
+    }
+
+    /**
+     * 协调模式下没有可用密钥时的处理
+     * - 当前节点能获得租约时由本节点生成
+     * - 否则等待租约持有者发布，最长等待一个租约时长：持有者宕机时其租约到期后由某个节点接管并生成，
+     *   冷启动时多个节点同时发现没有密钥，也只有获得租约的节点生成
+     * - 等待超时（例如租约表不可写）时仍优先使用数据库中的有效密钥，都没有时本节点兜底生成，保证加密不中断
+     */
+    private SecurityKey awaitCoordinatedKey() {
+        long deadline = System.currentTimeMillis() + properties.getCrypto().getRotationLeaseSeconds() * 1000L
+            + FOLLOWER_RETRY_INTERVAL_MILLIS;
+        do {
+            if (rotationLease.tryAcquire()) {
+                SecurityKey securityKey = selectLatestValidKey();
+                return securityKey != null ? securityKey : generateAndSaveNewKey();
+            }
+            try {
+                Thread.sleep(FOLLOWER_RETRY_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            SecurityKey securityKey = selectLatestValidKey();
             if (securityKey != null) {
-                return new KeyInfo(securityKey.getId(), currentKey);
+                return securityKey;
             }
+        } while (System.currentTimeMillis() < deadline);
+        SecurityKey securityKey = selectLatestValidKey();
+        if (securityKey != null) {
+            return securityKey;
         }
+        log.warn("No valid key published by rotation leader, generating key locally");
+        return generateAndSaveNewKey();
+    }
 
-        // 从数据库获取最新的有效密钥
-        SecurityKey securityKey = securityKeyMapper.selectOne(
+    /**
+     * 后台提前刷新当前密钥
+     * 在当前密钥到期前的提前量窗口内，预先切换到下一个密钥，
+     * 保证加密路径上始终能拿到内存中的有效密钥
+     */
+    @Scheduled(fixedDelayString = "${security.crypto.key-refresh-interval-millis:5000}")
+    public void refreshActiveKey() {
+        try {
+            if (rotationLease != null && rotationLease.tryAcquire()) {
+                // 租约持有者提前生成下一个密钥，其他节点只需读取
+                publishNextKey();
+            }
+            ActiveKey snapshot = activeKey;
+            long refreshAt = System.currentTimeMillis() + properties.getCrypto().getKeyRefreshAheadSeconds() * 1000L;
+            if (snapshot != null && snapshot.isValidAt(refreshAt)) {
+                return;
+            }
+            rotateActiveKey(snapshot);
+        } catch (Exception e) {
+            log.error("Error while refreshing active key", e);
+        }
+    }
+
+    private synchronized void rotateActiveKey(ActiveKey expected) {
+        if (activeKey != expected) {
+            // 其他线程已经完成切换
+            return;
+        }
+        SecurityKey latest = selectLatestValidKey();
+        boolean hasNewerKey = latest != null && (expected == null || latest.getExpiryTime().isAfter(expected.expiryTime));
+        if (!hasNewerKey) {
+            if (rotationLease == null) {
+                // 数据库中没有比当前密钥更晚到期的密钥，生成下一个密钥
+                latest = generateAndSaveNewKey();
+            } else if (latest == null || (expected != null && expected.isValidAt(System.currentTimeMillis()))) {
+                // 协调模式下等待租约持有者发布下一个密钥，当前密钥仍可继续使用；
+                // 当前密钥已过期时由加密路径的同步加载等待，后台任务不在锁内等待，下个周期再检查
+                return;
+            }
+        }
+        ActiveKey next = activate(latest);
+        log.info("Rotated active key to id {}, valid until {}", next.keyInfo.getId(), next.expiryTime);
+    }
+
+    /**
+     * 租约持有者检查最晚到期的密钥，在其进入预生成窗口时提前生成下一个密钥
+     * 下一个密钥在最晚到期密钥进入刷新提前量窗口时生效，到期时间在其基础上顺延一个密钥周期，
+     * 其他节点在各自的刷新周期内读取到它，无需自行生成；没有有效密钥时生成立即生效的密钥
+     */
+    private synchronized void publishNextKey() {
+        LocalDateTime now = LocalDateTime.now();
+        SecurityKey latest = securityKeyMapper.selectOne(
+            new LambdaQueryWrapper<SecurityKey>()
+                .eq(SecurityKey::getKeyType, GLOBAL_KEY_TYPE)
+                .eq(SecurityKey::getStatus, 1)
+                .ge(SecurityKey::getExpiryTime, now)
+                .orderByDesc(SecurityKey::getExpiryTime)
+                .last("LIMIT 1")
+        );
+        if (latest != null && latest.getExpiryTime().isAfter(now.plusSeconds(properties.getCrypto().getKeyPregenerateSeconds()))) {
+            return;
+        }
+        SecurityKey next;
+        if (latest == null) {
+            next = generateAndSaveNewKey();
+        } else {
+            LocalDateTime effectiveTime = latest.getExpiryTime()
+                .minusSeconds(properties.getCrypto().getKeyRefreshAheadSeconds());
+            next = saveNewKey(effectiveTime.isAfter(now) ? effectiveTime : now,
+                latest.getExpiryTime().plusMinutes(KEY_EXPIRE_MINUTES));
+        }
+        log.info("Rotation leader {} published key id {}, effective from {} until {}",
+            rotationLease.getNodeId(), next.getId(), next.getEffectiveTime(), next.getExpiryTime());
+    }
+
+    private SecurityKey selectLatestValidKey() {
+        return securityKeyMapper.selectOne(
             new LambdaQueryWrapper<SecurityKey>()
                 .eq(SecurityKey::getKeyType, GLOBAL_KEY_TYPE)
                 .eq(SecurityKey::getStatus, 1)
@@ -55,15 +251,12 @@ public class KeyManager {
                 .orderByDesc(SecurityKey::getId)
                 .last("LIMIT 1")
         );
+    }
 
-        if (securityKey != null) {
-            currentKey = securityKey.getKeyValue();
-            return new KeyInfo(securityKey.getId(), currentKey);
-        }
-
-        // 如果没有有效的密钥，生成新密钥
-        SecurityKey newKey = generateAndSaveNewKey();
-        return new KeyInfo(newKey.getId(), newKey.getKeyValue());
+    private ActiveKey activate(SecurityKey securityKey) {
+        ActiveKey next = new ActiveKey(new KeyInfo(securityKey.getId(), securityKey.getKeyValue()), securityKey.getExpiryTime());
+        activeKey = next;
+        return next;
     }
 
 
@@ -76,54 +269,116 @@ public class KeyManager {
         return securityKey.getKeyValue();
     }
 
+    /**
+     * 按ID批量获取密钥值，一次IN查询返回所有存在的密钥
+     *
+     * @param ids 密钥ID集合
+     * @return 密钥ID到密钥值的映射，不存在的ID不会出现在结果中
+     */
+    public Map<Long, String> getKeyValuesByIds(Collection<Long> ids) {
+        Map<Long, String> keyValues = new HashMap<>(ids.size() * 2);
+        for (SecurityKey securityKey : securityKeyMapper.selectKeyValuesByIds(ids)) {
+            keyValues.put(securityKey.getId(), securityKey.getKeyValue());
+        }
+        return keyValues;
+    }
+
+    /**
+     * 一次查询加载所有未失效的密钥，用于启动预热
+     *
+     * @return 密钥ID到密钥值的映射
+     */
+    public Map<Long, String> getActiveKeyValues() {
+        Map<Long, String> keyValues = new HashMap<>();
+        for (SecurityKey securityKey : securityKeyMapper.selectList(
+                new LambdaQueryWrapper<SecurityKey>()
+                        .eq(SecurityKey::getStatus, 1)
+                        .select(SecurityKey::getId, SecurityKey::getKeyValue))) {
+            keyValues.put(securityKey.getId(), securityKey.getKeyValue());
+        }
+        return keyValues;
+    }
+
     @Transactional
     public SecurityKey generateAndSaveNewKey() {
+        LocalDateTime now = LocalDateTime.now();
+        return saveNewKey(now, now.plusMinutes(KEY_EXPIRE_MINUTES));
+    }
+
+    private SecurityKey saveNewKey(LocalDateTime effectiveTime, LocalDateTime expiryTime) {
         String newKey = UUID.randomUUID().toString().replace("-", "");
         SecurityKey securityKey = new SecurityKey();
         securityKey.setKeyType(GLOBAL_KEY_TYPE);
         securityKey.setKeyValue(newKey);
         securityKey.setStatus(1);
-        securityKey.setEffectiveTime(LocalDateTime.now());
-        securityKey.setExpiryTime(LocalDateTime.now().plusMinutes(KEY_EXPIRE_MINUTES));
+        securityKey.setEffectiveTime(effectiveTime);
+        securityKey.setExpiryTime(expiryTime);
         securityKey.setCreateTime(LocalDateTime.now());
         securityKey.setUpdateTime(LocalDateTime.now());
         
         securityKeyMapper.insert(securityKey);
-        currentKey = newKey;
         return securityKey;
     }
 
+    /**
+     * 将过期密钥标记为失效，失效的密钥不再用于加密
+     * 用它加密的旧数据仍通过密钥ID加载密钥解密，因此不通知解密密钥缓存淘汰
+     */
     @Scheduled(fixedRate = 60000) // 每分钟执行一次
     @Transactional
     public void cleanExpiredKeys() {
         try {
+            if (rotationLease != null && !rotationLease.tryAcquire()) {
+                // 协调模式下只有租约持有者清理过期密钥
+                return;
+            }
             log.info("Starting to clean expired keys...");
             
-            // 将过期的密钥状态更新为失效
-            LambdaUpdateWrapper<SecurityKey> updateWrapper = new LambdaUpdateWrapper<>();
-            updateWrapper.set(SecurityKey::getStatus, 0)
-                        .set(SecurityKey::getUpdateTime, LocalDateTime.now())
-                        .eq(SecurityKey::getStatus, 1)
-                        .lt(SecurityKey::getExpiryTime, LocalDateTime.now());
-            
-            int updatedCount = securityKeyMapper.update(null, updateWrapper);
-            log.info("Cleaned {} expired keys", updatedCount);
+            // 查询需要失效的过期密钥
+            List<Long> expiredIds = securityKeyMapper.selectList(
+                new LambdaQueryWrapper<SecurityKey>()
+                    .eq(SecurityKey::getStatus, 1)
+                    .lt(SecurityKey::getExpiryTime, LocalDateTime.now())
+                    .select(SecurityKey::getId)
+            ).stream().map(SecurityKey::getId).collect(Collectors.toList());
+
+            if (!expiredIds.isEmpty()) {
+                // 将过期的密钥状态更新为失效
+                LambdaUpdateWrapper<SecurityKey> updateWrapper = new LambdaUpdateWrapper<>();
+                updateWrapper.set(SecurityKey::getStatus, 0)
+                            .set(SecurityKey::getUpdateTime, LocalDateTime.now())
+                            .eq(SecurityKey::getStatus, 1)
+                            .in(SecurityKey::getId, expiredIds);
+                securityKeyMapper.update(null, updateWrapper);
+            }
+            log.info("Cleaned {} expired keys", expiredIds.size());
             
-            // 如果当前密钥已过期，生成新密钥
-            if (currentKey != null) {
-                SecurityKey currentKeyInfo = securityKeyMapper.selectOne(
-                    new LambdaQueryWrapper<SecurityKey>()
-                        .eq(SecurityKey::getKeyType, GLOBAL_KEY_TYPE)
-                        .eq(SecurityKey::getKeyValue, currentKey)
-                        .eq(SecurityKey::getStatus, 1)
-                );
-                if (currentKeyInfo == null || currentKeyInfo.getExpiryTime().isBefore(LocalDateTime.now())) {
-                    generateAndSaveNewKey();
-                }
+            // 如果当前密钥已过期，切换到新密钥
+            ActiveKey snapshot = activeKey;
+            if (snapshot != null && !snapshot.isValidAt(System.currentTimeMillis())) {
+                rotateActiveKey(snapshot);
             }
         } catch (Exception e) {
             log.error("Error while cleaning expired keys", e);
         }
     }
-}
 
+    /**
+     * 内存中的当前密钥快照：密钥信息及其有效期
+     */
+    private static final class ActiveKey {
+        private final KeyInfo keyInfo;
+        private final LocalDateTime expiryTime;
+        private final long expiryMillis;
+
+        private ActiveKey(KeyInfo keyInfo, LocalDateTime expiryTime) {
+            this.keyInfo = keyInfo;
+            this.expiryTime = expiryTime;
+            this.expiryMillis = expiryTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        }
+
+        private boolean isValidAt(long epochMillis) {
+            return epochMillis < expiryMillis;
+        }
+    }
+}
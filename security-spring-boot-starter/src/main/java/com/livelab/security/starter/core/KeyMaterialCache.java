@@ -0,0 +1,155 @@
+package com.livelab.security.starter.core;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 密钥ID到密钥材料的无锁缓存
+ *
+ * 设计说明：
+ * 1. 以long类型的密钥ID为键，避免Long装箱
+ * 2. 缓存的是已构建好的SecretKeySpec，命中后无需再处理密钥字节
+ * 3. 使用开放寻址（线性探测）的定长槽位数组，容量固定，内存有上界
+ * 4. 槽位中的条目不可变，读写均通过CAS完成，读路径无锁
+ * 5. 探测范围内没有空位时覆盖起始槽位上的条目，作为容量淘汰；覆盖同样通过CAS完成，不会丢失并发写入
+ * 6. 可按ID主动淘汰，仅用于确认使用该密钥的数据已全部重新加密的场景
+ *
+ * 密钥记录一旦写入数据库就不会再修改，因此缓存条目无需失效校验。
+ * 密钥过期失效（status=0）只是不再用于加密，用它加密的旧数据仍要解密，淘汰后下一次读取会重新加载，
+ * 因此失效时不淘汰，由固定容量保证内存上界
+ */
+public class KeyMaterialCache {
+    /**
+     * 单次查找最多探测的槽位数
+     */
+    private static final int MAX_PROBES = 8;
+
+    /**
+     * 被淘汰条目留下的墓碑，保证后续探测不会提前终止
+     */
+    private static final Entry TOMBSTONE = new Entry(Long.MIN_VALUE, null);
+
+    private final AtomicReferenceArray<Entry> slots;
+    private final int mask;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param capacity 最大缓存条目数，会向上取整为2的幂
+     */
+    public KeyMaterialCache(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, MAX_PROBES) - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * 查找密钥材料
+     *
+     * @param keyId 密钥ID
+     * @return 密钥规范，未命中时返回null
+     */
+    public SecretKeySpec get(long keyId) {
+        int index = indexOf(keyId);
+        for (int i = 0; i < MAX_PROBES; i++) {
+            Entry entry = slots.get((index + i) & mask);
+            if (entry == null) {
+                break;
+            }
+            if (entry != TOMBSTONE && entry.keyId == keyId) {
+                hits.increment();
+                return entry.key;
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * 写入密钥材料
+     * 先在整个探测范围内查找同ID条目，已存在时不再写入；不存在时占用第一个墓碑或空闲槽位，
+     * 探测范围已满时覆盖起始槽位。槽位在检查之后被并发修改时重新探测
+     *
+     * @param keyId 密钥ID
+     * @param key 密钥规范
+     */
+    public void put(long keyId, SecretKeySpec key) {
+        Entry created = new Entry(keyId, key);
+        int index = indexOf(keyId);
+        while (true) {
+            int freeSlot = -1;
+            Entry freeEntry = null;
+            for (int i = 0; i < MAX_PROBES; i++) {
+                int slot = (index + i) & mask;
+                Entry entry = slots.get(slot);
+                if (entry == null || entry == TOMBSTONE) {
+                    if (freeSlot < 0) {
+                        freeSlot = slot;
+                        freeEntry = entry;
+                    }
+                    if (entry == null) {
+                        // 查找在空槽位处终止，之后不会有可见的同ID条目
+                        break;
+                    }
+                } else if (entry.keyId == keyId) {
+                    return;
+                }
+            }
+            if (freeSlot < 0) {
+                freeSlot = index;
+                freeEntry = slots.get(index);
+                if (freeEntry == null || freeEntry == TOMBSTONE || freeEntry.keyId == keyId) {
+                    // 探测之后起始槽位已被并发修改
+                    continue;
+                }
+            }
+            if (slots.compareAndSet(freeSlot, freeEntry, created)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 淘汰指定密钥，用于使用该密钥加密的数据已全部重新加密后释放槽位
+     *
+     * @param keyId 密钥ID
+     */
+    public void evict(long keyId) {
+        int index = indexOf(keyId);
+        for (int i = 0; i < MAX_PROBES; i++) {
+            int slot = (index + i) & mask;
+            Entry entry = slots.get(slot);
+            if (entry == null) {
+                return;
+            }
+            if (entry != TOMBSTONE && entry.keyId == keyId) {
+                slots.compareAndSet(slot, entry, TOMBSTONE);
+            }
+        }
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    private int indexOf(long keyId) {
+        // 密钥ID通常是连续自增的，混合高低位后再取模，使相邻ID分散到不同槽位
+        long h = keyId * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private static final class Entry {
+        private final long keyId;
+        private final SecretKeySpec key;
+
+        private Entry(long keyId, SecretKeySpec key) {
+            this.keyId = keyId;
+            this.key = key;
+        }
+    }
+}
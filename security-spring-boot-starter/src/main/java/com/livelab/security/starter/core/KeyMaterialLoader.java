@@ -0,0 +1,197 @@
+package com.livelab.security.starter.core;
+
+import com.livelab.security.starter.exception.SecurityException;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * 解密密钥的合并加载器
+ *
+ * 缓存未命中时的加载规则：
+ * 1. 同一个密钥ID同时只有一次加载，并发的未命中线程等待同一个结果（single-flight）
+ * 2. 不同密钥ID的未命中会合并为一次 WHERE id IN (...) 查询
+ * 3. 同一时刻只有一个线程执行查询，查询期间新到达的未命中在下一轮一起加载
+ *
+ * 避免重启或新密钥出现时大量请求线程同时查询密钥库，耗尽安全模块的连接池
+ */
+@Slf4j
+public class KeyMaterialLoader {
+    /**
+     * 单次IN查询最多包含的密钥ID数
+     */
+    private static final int MAX_BATCH_SIZE = 500;
+
+    private final KeyManager keyManager;
+    private final KeyMaterialCache keyCache;
+    private final Function<String, SecretKeySpec> keyProcessor;
+
+    private final ConcurrentHashMap<Long, CompletableFuture<SecretKeySpec>> inFlight = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Long> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean loading = new AtomicBoolean();
+
+    /**
+     * @param keyManager 密钥管理器，用于批量查询密钥值
+     * @param keyCache 密钥缓存，加载结果会写入缓存
+     * @param keyProcessor 将数据库中的密钥值处理为算法所需的密钥规范
+     */
+    public KeyMaterialLoader(KeyManager keyManager, KeyMaterialCache keyCache, Function<String, SecretKeySpec> keyProcessor) {
+        this.keyManager = keyManager;
+        this.keyCache = keyCache;
+        this.keyProcessor = keyProcessor;
+    }
+
+    /**
+     * 获取指定ID的密钥，优先读缓存，未命中时合并加载
+     *
+     * @param keyId 密钥ID
+     * @return 密钥规范
+     * @throws SecurityException 当密钥不存在或加载失败时抛出
+     */
+    public SecretKeySpec load(long keyId) {
+        SecretKeySpec key = keyCache.get(keyId);
+        if (key != null) {
+            return key;
+        }
+
+        CompletableFuture<SecretKeySpec> future = new CompletableFuture<>();
+        CompletableFuture<SecretKeySpec> existing = inFlight.putIfAbsent(keyId, future);
+        if (existing != null) {
+            // 已有线程在加载该密钥，等待其结果
+            return await(existing);
+        }
+
+        // 获得加载权后再检查一次缓存，避免与刚结束的加载竞争
+        key = keyCache.get(keyId);
+        if (key != null) {
+            inFlight.remove(keyId, future);
+            future.complete(key);
+            return key;
+        }
+
+        pending.add(keyId);
+        drain();
+        return await(future);
+    }
+
+    /**
+     * 批量获取多个密钥，缓存未命中的ID合并到同一次查询中加载
+     *
+     * @param keyIds 密钥ID集合
+     * @return 密钥ID到密钥规范的映射
+     * @throws SecurityException 当任一密钥不存在或加载失败时抛出
+     */
+    public Map<Long, SecretKeySpec> loadAll(Collection<Long> keyIds) {
+        Map<Long, SecretKeySpec> keys = new HashMap<>(keyIds.size() * 2);
+        Map<Long, CompletableFuture<SecretKeySpec>> waiting = new HashMap<>();
+        for (Long keyId : keyIds) {
+            SecretKeySpec key = keyCache.get(keyId);
+            if (key != null) {
+                keys.put(keyId, key);
+                continue;
+            }
+            CompletableFuture<SecretKeySpec> future = new CompletableFuture<>();
+            CompletableFuture<SecretKeySpec> existing = inFlight.putIfAbsent(keyId, future);
+            if (existing != null) {
+                waiting.put(keyId, existing);
+            } else {
+                waiting.put(keyId, future);
+                pending.add(keyId);
+            }
+        }
+        if (!waiting.isEmpty()) {
+            drain();
+            for (Map.Entry<Long, CompletableFuture<SecretKeySpec>> entry : waiting.entrySet()) {
+                keys.put(entry.getKey(), await(entry.getValue()));
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * 由一个线程批量处理待加载的密钥ID，直到队列为空
+     * 释放加载权后重新检查队列，保证不会遗漏其他线程刚加入的ID
+     */
+    private void drain() {
+        while (!pending.isEmpty() && loading.compareAndSet(false, true)) {
+            try {
+                List<Long> batch = new ArrayList<>();
+                Long keyId;
+                while (batch.size() < MAX_BATCH_SIZE && (keyId = pending.poll()) != null) {
+                    batch.add(keyId);
+                }
+                if (!batch.isEmpty()) {
+                    loadBatch(batch);
+                }
+            } finally {
+                loading.set(false);
+            }
+        }
+    }
+
+    private void loadBatch(List<Long> batch) {
+        Map<Long, String> keyValues;
+        try {
+            keyValues = keyManager.getKeyValuesByIds(batch);
+        } catch (Exception e) {
+            log.error("Failed to load {} keys", batch.size(), e);
+            for (Long keyId : batch) {
+                complete(keyId, null, e);
+            }
+            return;
+        }
+
+        for (Long keyId : batch) {
+            String keyValue = keyValues.get(keyId);
+            if (keyValue == null) {
+                complete(keyId, null, new SecurityException("Key not found: " + keyId));
+                continue;
+            }
+            try {
+                SecretKeySpec key = keyProcessor.apply(keyValue);
+                keyCache.put(keyId, key);
+                complete(keyId, key, null);
+            } catch (Exception e) {
+                complete(keyId, null, e);
+            }
+        }
+    }
+
+    private void complete(Long keyId, SecretKeySpec key, Throwable error) {
+        CompletableFuture<SecretKeySpec> future = inFlight.remove(keyId);
+        if (future == null) {
+            return;
+        }
+        if (error != null) {
+            future.completeExceptionally(error);
+        } else {
+            future.complete(key);
+        }
+    }
+
+    private static SecretKeySpec await(CompletableFuture<SecretKeySpec> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SecurityException("Interrupted while loading key", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SecurityException) {
+                throw (SecurityException) cause;
+            }
+            throw new SecurityException("Failed to load key", cause);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.livelab.security.starter.core;
+
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.livelab.security.starter.entity.SecurityKeyLease;
+import com.livelab.security.starter.mapper.SecurityKeyLeaseMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * 基于数据库租约的密钥轮换选主
+ *
+ * 集群中所有节点竞争security_key_lease表中的同一条租约记录：
+ * - 租约未过期时只有持有者可以续约
+ * - 租约过期后任意节点都可以接管
+ * 只有租约持有者负责生成新密钥和清理过期密钥，其他节点只读取密钥，
+ * 因此密钥表的增长和轮换写入与集群节点数无关
+ */
+@Slf4j
+public class KeyRotationLease {
+    private static final String LEASE_NAME = "GLOBAL_KEY_ROTATION";
+
+    private final SecurityKeyLeaseMapper leaseMapper;
+    private final String nodeId;
+    private final long leaseSeconds;
+    private volatile boolean leaseRowExists;
+
+    /**
+     * @param leaseMapper 租约数据访问接口
+     * @param leaseSeconds 租约时长（秒），应大于密钥刷新间隔
+     */
+    public KeyRotationLease(SecurityKeyLeaseMapper leaseMapper, long leaseSeconds) {
+        this(leaseMapper, leaseSeconds,
+            ManagementFactory.getRuntimeMXBean().getName() + ":" + UUID.randomUUID().toString().substring(0, 8));
+    }
+
+    public KeyRotationLease(SecurityKeyLeaseMapper leaseMapper, long leaseSeconds, String nodeId) {
+        this.leaseMapper = leaseMapper;
+        this.leaseSeconds = leaseSeconds;
+        this.nodeId = nodeId;
+    }
+
+    /**
+     * 尝试获取或续约租约
+     *
+     * @return 当前节点是否持有租约
+     */
+    public boolean tryAcquire() {
+        LocalDateTime now = LocalDateTime.now();
+        LambdaUpdateWrapper<SecurityKeyLease> updateWrapper = new LambdaUpdateWrapper<>();
+        updateWrapper.set(SecurityKeyLease::getOwner, nodeId)
+                    .set(SecurityKeyLease::getExpireTime, now.plusSeconds(leaseSeconds))
+                    .set(SecurityKeyLease::getUpdateTime, now)
+                    .eq(SecurityKeyLease::getLeaseName, LEASE_NAME)
+                    .and(w -> w.eq(SecurityKeyLease::getOwner, nodeId)
+                               .or()
+                               .lt(SecurityKeyLease::getExpireTime, now));
+        if (leaseMapper.update(null, updateWrapper) > 0) {
+            leaseRowExists = true;
+            return true;
+        }
+        if (leaseRowExists) {
+            return false;
+        }
+        return createLease(now);
+    }
+
+    /**
+     * 租约记录不存在时创建，并发创建时只有一个节点成功
+     */
+    private boolean createLease(LocalDateTime now) {
+        if (leaseMapper.selectById(LEASE_NAME) != null) {
+            leaseRowExists = true;
+            return false;
+        }
+        SecurityKeyLease lease = new SecurityKeyLease();
+        lease.setLeaseName(LEASE_NAME);
+        lease.setOwner(nodeId);
+        lease.setExpireTime(now.plusSeconds(leaseSeconds));
+        lease.setUpdateTime(now);
+        try {
+            leaseMapper.insert(lease);
+            log.info("Node {} created key rotation lease", nodeId);
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        } finally {
+            leaseRowExists = true;
+        }
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+}
@@ -0,0 +1,25 @@
+package com.livelab.security.starter.core;
+
+/**
+ * 延迟解密代理实现的接口
+ *
+ * 开启security.crypto.lazy-decrypt后，查询结果中的实体会被替换为其子类代理，
+ * 加密字段在第一次调用getter时才解密，结果保存在实例上，之后的访问不再解密
+ */
+public interface LazyDecryptable {
+
+    /**
+     * 立即解密所有尚未解密的加密字段
+     * 需要通过反射直接读取字段（如脱敏）之前调用
+     */
+    void materializeSecureFields();
+
+    /**
+     * 放弃指定字段的延迟解密，字段保持数据库中的密文
+     * 写操作使用，保证密文原样写回而不会被重复加密或以明文写入
+     *
+     * @param fieldName 字段名
+     * @return 字段仍处于未解密状态时返回true
+     */
+    boolean skipPendingDecrypt(String fieldName);
+}
@@ -0,0 +1,321 @@
+package com.livelab.security.starter.core;
+
+import com.livelab.security.starter.core.ClassSecurityPlan.SecureField;
+import com.livelab.security.starter.util.CryptoUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cglib.proxy.Callback;
+import org.springframework.cglib.proxy.Enhancer;
+import org.springframework.cglib.proxy.MethodInterceptor;
+import org.springframework.cglib.proxy.MethodProxy;
+import org.springframework.cglib.proxy.NoOp;
+import org.springframework.util.StringUtils;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 延迟解密代理的创建器
+ *
+ * 为每个实体类生成一次CGLIB子类（不实现Factory接口，避免代理方法出现在序列化结果中），
+ * 只拦截加密字段的getter和setter：
+ * 1. getter第一次被调用时解密该字段并写回实例，之后直接返回明文
+ * 2. setter被调用后该字段不再需要解密
+ * 3. 只读取id、status等普通字段的业务代码不产生任何解密开销
+ *
+ * 以下情况无法代理，由调用方按原有方式立即解密：
+ * final类、没有无参构造方法、加密字段没有可覆盖的getter
+ */
+@Slf4j
+public class LazyDecryptor {
+    private final CryptoUtil cryptoUtil;
+    private final ClassValue<ProxyType> proxyTypes = new ClassValue<ProxyType>() {
+        @Override
+        protected ProxyType computeValue(Class<?> type) {
+            return ProxyType.create(type);
+        }
+    };
+
+    public LazyDecryptor(CryptoUtil cryptoUtil) {
+        this.cryptoUtil = cryptoUtil;
+    }
+
+    /**
+     * 将实体替换为延迟解密代理
+     *
+     * @param entity 查询得到的实体，加密字段为密文
+     * @return 代理实例；无法代理时返回原对象
+     */
+    public Object wrap(Object entity) {
+        if (entity == null || entity instanceof LazyDecryptable) {
+            return entity;
+        }
+        ProxyType type = proxyTypes.get(entity.getClass());
+        if (type == null) {
+            return entity;
+        }
+        try {
+            return type.newProxy(entity, cryptoUtil);
+        } catch (Exception e) {
+            log.error("Failed to create lazy decrypt proxy for {}", entity.getClass().getName(), e);
+            return entity;
+        }
+    }
+
+    /**
+     * 判断对象是否能被代理，或已经是代理
+     */
+    public boolean isWrappable(Object entity) {
+        return entity instanceof LazyDecryptable || (entity != null && proxyTypes.get(entity.getClass()) != null);
+    }
+
+    /**
+     * 将列表中的实体就地替换为延迟解密代理
+     *
+     * @param items 查询结果列表
+     * @return 无法代理、需要立即解密的元素；列表不可修改时返回全部元素
+     */
+    @SuppressWarnings("unchecked")
+    public List<Object> wrapAll(List<?> items) {
+        List<Object> list = (List<Object>) items;
+        List<Object> eager = new ArrayList<>();
+        for (int i = 0; i < list.size(); i++) {
+            Object item = list.get(i);
+            Object wrapped = wrap(item);
+            if (wrapped == item) {
+                if (!(item instanceof LazyDecryptable)) {
+                    eager.add(item);
+                }
+                continue;
+            }
+            try {
+                list.set(i, wrapped);
+            } catch (UnsupportedOperationException e) {
+                return new ArrayList<>(items);
+            }
+        }
+        return eager;
+    }
+
+    /**
+     * 实体类对应的代理类及其加密字段信息，每个实体类只生成一次
+     */
+    private static final class ProxyType {
+        private final Constructor<?> constructor;
+        private final FieldAccessor[] copyFields;
+        private final SecureField[] secureFields;
+        private final Map<String, Integer> getters;
+        private final Map<String, Integer> setters;
+        private final Map<String, Integer> fieldIndexes;
+
+        private ProxyType(Constructor<?> constructor, FieldAccessor[] copyFields, SecureField[] secureFields,
+                          Map<String, Integer> getters, Map<String, Integer> setters, Map<String, Integer> fieldIndexes) {
+            this.constructor = constructor;
+            this.copyFields = copyFields;
+            this.secureFields = secureFields;
+            this.getters = getters;
+            this.setters = setters;
+            this.fieldIndexes = fieldIndexes;
+        }
+
+        /**
+         * 分析实体类并生成代理类，不满足代理条件时返回null
+         */
+        static ProxyType create(Class<?> type) {
+            if (Modifier.isFinal(type.getModifiers()) || type.isInterface() || type.isArray()
+                || type.getName().startsWith("java.") || type.getName().contains("$$")) {
+                return null;
+            }
+            SecureField[] secureFields = ClassSecurityPlan.of(type).getDecryptFields();
+            if (secureFields.length == 0) {
+                return null;
+            }
+            Map<String, Integer> getters = new HashMap<>();
+            Map<String, Integer> setters = new HashMap<>();
+            Map<String, Integer> fieldIndexes = new HashMap<>();
+            for (int index = 0; index < secureFields.length; index++) {
+                String property = StringUtils.capitalize(secureFields[index].getName());
+                Method getter = findMethod(type, "get" + property);
+                if (getter == null || Modifier.isFinal(getter.getModifiers())) {
+                    return null;
+                }
+                getters.put(getter.getName(), index);
+                setters.put("set" + property, index);
+                fieldIndexes.put(secureFields[index].getName(), index);
+            }
+            List<FieldAccessor> copyFields = new ArrayList<>();
+            for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers())) {
+                        continue;
+                    }
+                    if (Modifier.isFinal(field.getModifiers())) {
+                        // final字段无法复制到代理实例
+                        return null;
+                    }
+                    copyFields.add(new FieldAccessor(field));
+                }
+            }
+            try {
+                Enhancer enhancer = new Enhancer();
+                enhancer.setSuperclass(type);
+                enhancer.setInterfaces(new Class<?>[]{LazyDecryptable.class});
+                enhancer.setUseFactory(false);
+                enhancer.setClassLoader(type.getClassLoader());
+                enhancer.setCallbackTypes(new Class<?>[]{MethodInterceptor.class, NoOp.class});
+                enhancer.setCallbackFilter(method -> isIntercepted(method, getters, setters) ? 0 : 1);
+                Class<?> proxyClass = enhancer.createClass();
+                Constructor<?> constructor = proxyClass.getDeclaredConstructor();
+                constructor.setAccessible(true);
+                return new ProxyType(constructor, copyFields.toArray(new FieldAccessor[0]), secureFields,
+                    getters, setters, fieldIndexes);
+            } catch (Exception | LinkageError e) {
+                log.warn("Lazy decryption is not available for {}: {}", type.getName(), e.getMessage());
+                return null;
+            }
+        }
+
+        /**
+         * 创建代理实例并复制原实体的全部字段
+         */
+        Object newProxy(Object entity, CryptoUtil cryptoUtil) throws ReflectiveOperationException {
+            LazyFields lazyFields = new LazyFields(this, cryptoUtil);
+            Class<?> proxyClass = constructor.getDeclaringClass();
+            Object proxy;
+            // 不实现Factory接口时，回调通过线程变量在构造时绑定到实例
+            Enhancer.registerCallbacks(proxyClass, new Callback[]{lazyFields, NoOp.INSTANCE});
+            try {
+                proxy = constructor.newInstance();
+            } finally {
+                Enhancer.registerCallbacks(proxyClass, null);
+            }
+            for (FieldAccessor field : copyFields) {
+                field.set(proxy, field.get(entity));
+            }
+            for (int i = 0; i < secureFields.length; i++) {
+                Object value = secureFields[i].get(proxy);
+                lazyFields.pending[i] = value instanceof String && CryptoUtil.isEncrypted((String) value);
+            }
+            return proxy;
+        }
+
+        private static boolean isIntercepted(Method method, Map<String, Integer> getters, Map<String, Integer> setters) {
+            if (method.getDeclaringClass() == LazyDecryptable.class) {
+                return true;
+            }
+            int parameters = method.getParameterCount();
+            return parameters == 0 && getters.containsKey(method.getName())
+                || parameters == 1 && setters.containsKey(method.getName());
+        }
+
+        private static Method findMethod(Class<?> type, String name) {
+            try {
+                Method method = type.getMethod(name);
+                return method.getReturnType() == String.class ? method : null;
+            } catch (NoSuchMethodException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * 单个代理实例的拦截器，记录哪些加密字段尚未解密
+     */
+    private static final class LazyFields implements MethodInterceptor {
+        private final ProxyType type;
+        private final CryptoUtil cryptoUtil;
+        private final boolean[] pending;
+
+        private LazyFields(ProxyType type, CryptoUtil cryptoUtil) {
+            this.type = type;
+            this.cryptoUtil = cryptoUtil;
+            this.pending = new boolean[type.secureFields.length];
+        }
+
+        @Override
+        public Object intercept(Object obj, Method method, Object[] args, MethodProxy methodProxy) throws Throwable {
+            String name = method.getName();
+            if (method.getDeclaringClass() == LazyDecryptable.class) {
+                if ("materializeSecureFields".equals(name)) {
+                    materialize(obj);
+                    return null;
+                }
+                return skip(obj, (String) args[0]);
+            }
+            if (args.length == 0) {
+                decrypt(obj, type.getters.get(name));
+            } else {
+                settle(type.setters.get(name));
+            }
+            return methodProxy.invokeSuper(obj, args);
+        }
+
+        private synchronized void decrypt(Object obj, int index) {
+            if (!pending[index]) {
+                return;
+            }
+            pending[index] = false;
+            SecureField field = type.secureFields[index];
+            Object value = field.get(obj);
+            if (value instanceof String && CryptoUtil.isEncrypted((String) value)) {
+                try {
+                    field.set(obj, cryptoUtil.decrypt((String) value));
+                } catch (Exception e) {
+                    log.error("Error decrypting field: " + field.getName(), e);
+                }
+            }
+        }
+
+        private synchronized void materialize(Object obj) {
+            List<Integer> indexes = new ArrayList<>();
+            List<String> values = new ArrayList<>();
+            for (int i = 0; i < pending.length; i++) {
+                if (!pending[i]) {
+                    continue;
+                }
+                Object value = type.secureFields[i].get(obj);
+                if (value instanceof String && CryptoUtil.isEncrypted((String) value)) {
+                    indexes.add(i);
+                    values.add((String) value);
+                } else {
+                    pending[i] = false;
+                }
+            }
+            if (values.isEmpty()) {
+                return;
+            }
+            try {
+                List<String> decryptedValues = cryptoUtil.decryptAll(values);
+                for (int i = 0; i < indexes.size(); i++) {
+                    int index = indexes.get(i);
+                    type.secureFields[index].set(obj, decryptedValues.get(i));
+                    pending[index] = false;
+                }
+            } catch (Exception e) {
+                // 批量解密失败时逐个解密，单个字段失败不影响其他字段
+                for (int index : indexes) {
+                    decrypt(obj, index);
+                }
+            }
+        }
+
+        private synchronized boolean skip(Object obj, String fieldName) {
+            Integer index = type.fieldIndexes.get(fieldName);
+            if (index == null || !pending[index]) {
+                return false;
+            }
+            pending[index] = false;
+            Object value = type.secureFields[index].get(obj);
+            return value instanceof String && CryptoUtil.isEncrypted((String) value);
+        }
+
+        private synchronized void settle(int index) {
+            pending[index] = false;
+        }
+    }
+}
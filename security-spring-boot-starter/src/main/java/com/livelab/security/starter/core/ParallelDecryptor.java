@@ -0,0 +1,114 @@
+package com.livelab.security.starter.core;
+
+import com.livelab.security.starter.exception.SecurityException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+/**
+ * 大结果集的并行解密执行器
+ *
+ * 执行规则：
+ * 1. 结果数量低于阈值或未启用并行时，直接在调用线程执行，不产生线程切换；
+ *    阈值不低于{@link #MIN_PARALLEL_SIZE}，保证并行时至少有两个分片
+ * 2. 超过阈值时按fork/join拆分为多个分片，在专用的ForkJoinPool中并行处理
+ * 3. 专用线程池的并行度有上限，加解密任务不会占满CPU而影响Tomcat请求线程
+ */
+@Slf4j
+public class ParallelDecryptor {
+    /**
+     * 单个分片的最小元素数，分片过小时任务调度开销会超过解密本身
+     */
+    private static final int MIN_CHUNK_SIZE = 256;
+    /**
+     * 并行解密的最小元素数，更少的元素只能拆出一个分片，并行只会多一次线程切换
+     */
+    public static final int MIN_PARALLEL_SIZE = 2 * MIN_CHUNK_SIZE;
+
+    private final boolean enabled;
+    private final int threshold;
+    private final ForkJoinPool pool;
+
+    /**
+     * @param enabled 是否启用并行解密
+     * @param threshold 启用并行的最小元素数，小于{@link #MIN_PARALLEL_SIZE}时按{@link #MIN_PARALLEL_SIZE}处理；
+     *                  未启用并行时不使用
+     * @param parallelism 专用线程池的并行度
+     * @throws SecurityException 启用并行且阈值不是正数时抛出
+     */
+    public ParallelDecryptor(boolean enabled, int threshold, int parallelism) {
+        if (enabled && threshold <= 0) {
+            throw new SecurityException("Parallel decrypt threshold must be positive: " + threshold);
+        }
+        if (enabled && threshold < MIN_PARALLEL_SIZE) {
+            log.warn("Parallel decrypt threshold {} is below the minimum {}, using {}",
+                threshold, MIN_PARALLEL_SIZE, MIN_PARALLEL_SIZE);
+        }
+        this.enabled = enabled;
+        this.threshold = Math.max(threshold, MIN_PARALLEL_SIZE);
+        this.pool = enabled ? new ForkJoinPool(Math.max(1, parallelism), ParallelDecryptor::newWorker, null, false) : null;
+    }
+
+    /**
+     * 按分片处理元素
+     *
+     * @param items 需要处理的元素
+     * @param action 分片处理逻辑，每次接收一个连续的子列表，需保证线程安全
+     */
+    public <T> void forEachChunk(List<T> items, Consumer<List<T>> action) {
+        if (!enabled || items.size() < threshold) {
+            action.accept(items);
+            return;
+        }
+        int chunkSize = Math.max(MIN_CHUNK_SIZE, items.size() / (pool.getParallelism() * 4) + 1);
+        pool.invoke(new ChunkTask<>(items, 0, items.size(), chunkSize, action));
+    }
+
+    /**
+     * 关闭专用线程池
+     */
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    private static ForkJoinWorkerThread newWorker(ForkJoinPool pool) {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("security-decrypt-" + thread.getPoolIndex());
+        return thread;
+    }
+
+    private static final class ChunkTask<T> extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<T> items;
+        private final int from;
+        private final int to;
+        private final int chunkSize;
+        private final Consumer<List<T>> action;
+
+        private ChunkTask(List<T> items, int from, int to, int chunkSize, Consumer<List<T>> action) {
+            this.items = items;
+            this.from = from;
+            this.to = to;
+            this.chunkSize = chunkSize;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= chunkSize) {
+                action.accept(items.subList(from, to));
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new ChunkTask<>(items, from, middle, chunkSize, action),
+                      new ChunkTask<>(items, middle, to, chunkSize, action));
+        }
+    }
+}
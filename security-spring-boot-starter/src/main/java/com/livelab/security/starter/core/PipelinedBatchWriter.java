@@ -0,0 +1,204 @@
+package com.livelab.security.starter.core;
+
+import com.livelab.security.starter.exception.SecurityException;
+import com.livelab.security.starter.model.KeyInfo;
+import com.livelab.security.starter.util.CryptoUtil;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 流水线方式的批量写入
+ *
+ * 普通的saveBatch先串行加密全部实体再执行JDBC，CPU和数据库I/O不会重叠。流水线写入时：
+ * 1. 实体按batchSize分片，调用线程执行第N片的刷写（executeBatch）时，工作线程加密第N+1片
+ * 2. 刷写始终在调用线程中按顺序执行，仍然使用调用方的SqlSession和事务
+ * 3. 整个批量写入开始时获取一次密钥快照，所有分片使用同一个密钥
+ * 4. 每次写入最多提前加密queueCapacity个分片，工作线程池的任务队列同样有界，
+ *    队列满时由调用线程自己加密，数据库变慢时加密不会无限堆积内存
+ *
+ * 分片中任何字段加密或生成摘要失败时整个分片失败（严格模式的encryptAll），不会刷写明文；
+ * 分片加密失败或刷写失败时取消尚未开始的加密任务并抛出异常，由调用方的事务回滚
+ */
+@Slf4j
+public class PipelinedBatchWriter {
+    private final EntitySecurityProcessor processor;
+    private final CryptoUtil cryptoUtil;
+    private final int queueCapacity;
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * @param processor 实体的加密和摘要处理
+     * @param cryptoUtil 加密工具，用于获取密钥快照
+     * @param threads 加密工作线程数
+     * @param queueCapacity 每次写入最多提前加密的分片数
+     */
+    public PipelinedBatchWriter(EntitySecurityProcessor processor, CryptoUtil cryptoUtil, int threads, int queueCapacity) {
+        this.processor = processor;
+        this.cryptoUtil = cryptoUtil;
+        this.queueCapacity = Math.max(1, queueCapacity);
+        int poolSize = Math.max(1, threads);
+        AtomicInteger index = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(poolSize * this.queueCapacity),
+            r -> {
+                Thread thread = new Thread(r, "security-batch-" + index.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.CallerRunsPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 分片加密并刷写实体
+     *
+     * @param entities 需要写入的实体
+     * @param batchSize 每个分片的实体数
+     * @param flusher 刷写一个已加密的分片，在调用线程中执行，例如逐个insert后flushStatements
+     * @return 各阶段的耗时统计
+     * @throws SecurityException 当加密任务被中断或执行失败时抛出
+     */
+    public <T> BatchWriteStats write(Collection<T> entities, int batchSize, Consumer<List<T>> flusher) {
+        long start = System.nanoTime();
+        List<List<T>> chunks = split(entities, Math.max(1, batchSize));
+        if (chunks.isEmpty()) {
+            return new BatchWriteStats(0, 0, 0, 0, 0, 0);
+        }
+        KeyInfo keyInfo = cryptoUtil.currentKey();
+        AtomicLong encryptNanos = new AtomicLong();
+        long waitNanos = 0;
+        long flushNanos = 0;
+
+        if (chunks.size() == 1) {
+            // 只有一个分片时没有可以重叠的阶段，直接在调用线程处理
+            List<T> chunk = chunks.get(0);
+            encrypt(chunk, keyInfo, encryptNanos);
+            long flushStart = System.nanoTime();
+            flusher.accept(chunk);
+            flushNanos = System.nanoTime() - flushStart;
+        } else {
+            Deque<Future<List<T>>> window = new ArrayDeque<>(queueCapacity);
+            int next = 0;
+            try {
+                while (next < chunks.size() && window.size() < queueCapacity) {
+                    window.add(submit(chunks.get(next++), keyInfo, encryptNanos));
+                }
+                while (!window.isEmpty()) {
+                    long waitStart = System.nanoTime();
+                    List<T> chunk = await(window.poll());
+                    long flushStart = System.nanoTime();
+                    waitNanos += flushStart - waitStart;
+                    // 先提交下一个分片，刷写期间由工作线程加密
+                    if (next < chunks.size()) {
+                        window.add(submit(chunks.get(next++), keyInfo, encryptNanos));
+                    }
+                    flusher.accept(chunk);
+                    flushNanos += System.nanoTime() - flushStart;
+                }
+            } finally {
+                for (Future<List<T>> pending : window) {
+                    pending.cancel(false);
+                }
+            }
+        }
+
+        BatchWriteStats stats = new BatchWriteStats(entities.size(), chunks.size(), encryptNanos.get(),
+            waitNanos, flushNanos, System.nanoTime() - start);
+        log.debug("Pipelined batch write finished: {}", stats);
+        return stats;
+    }
+
+    /**
+     * 关闭加密工作线程池
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private <T> Future<List<T>> submit(List<T> chunk, KeyInfo keyInfo, AtomicLong encryptNanos) {
+        return executor.submit(() -> {
+            encrypt(chunk, keyInfo, encryptNanos);
+            return chunk;
+        });
+    }
+
+    private void encrypt(List<?> chunk, KeyInfo keyInfo, AtomicLong encryptNanos) {
+        long start = System.nanoTime();
+        processor.encryptAll(chunk, keyInfo, true);
+        encryptNanos.addAndGet(System.nanoTime() - start);
+    }
+
+    private static <T> List<List<T>> split(Collection<T> entities, int batchSize) {
+        List<List<T>> chunks = new ArrayList<>(entities.size() / batchSize + 1);
+        Iterator<T> iterator = entities.iterator();
+        while (iterator.hasNext()) {
+            List<T> chunk = new ArrayList<>(Math.min(batchSize, entities.size()));
+            while (chunk.size() < batchSize && iterator.hasNext()) {
+                chunk.add(iterator.next());
+            }
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    private static <T> List<T> await(Future<List<T>> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SecurityException("Interrupted while encrypting batch", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new SecurityException("Failed to encrypt batch", cause);
+        }
+    }
+
+    /**
+     * 一次流水线批量写入的耗时统计，单位均为纳秒
+     */
+    @Value
+    public static class BatchWriteStats {
+        /**
+         * 写入的实体数
+         */
+        int rows;
+        /**
+         * 分片数
+         */
+        int chunks;
+        /**
+         * 所有分片加密和摘要的耗时之和，分布在多个工作线程上
+         */
+        long encryptNanos;
+        /**
+         * 调用线程等待分片加密完成的耗时，接近0说明加密完全被刷写掩盖
+         */
+        long waitNanos;
+        /**
+         * 调用线程执行刷写的耗时
+         */
+        long flushNanos;
+        /**
+         * 整个批量写入的耗时
+         */
+        long totalNanos;
+    }
+}
@@ -0,0 +1,312 @@
+package com.livelab.security.starter.core;
+
+import com.baomidou.mybatisplus.core.conditions.Wrapper;
+import com.baomidou.mybatisplus.core.metadata.IPage;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Proxy;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * 在对象图中查找需要加密、解密或脱敏的对象
+ *
+ * 每个类预先分析一次（TypeShape，通过ClassValue缓存）：
+ * 1. 类自身是否有@Encrypt/@Digest、@Decrypt、@Mask字段
+ * 2. 哪些字段可能引用到带有这些字段的对象，只有这些字段会在遍历时读取
+ * 3. 类及其可达的字段是否可能包含目标对象，不可能时整棵子树跳过
+ *
+ * 字段按声明类型（包括泛型参数）判断：基本类型、JDK中的非容器类型、枚举、框架类型（包括自定义的条件构造器）及其容器不会被读取；
+ * 非final的业务类型运行时可能是带有安全字段的子类，保留为可达，由运行时类型决定是否继续
+ *
+ * 遍历支持Collection、Map的值、Optional、对象数组和IPage，按对象标识检测环，最大深度为{@link #MAX_DEPTH}
+ */
+public final class SecureObjectWalker {
+    /**
+     * 遍历的最大深度，防止过深的对象图导致栈溢出
+     */
+    public static final int MAX_DEPTH = 64;
+
+    private static final int ENCRYPT = 1;
+    private static final int DECRYPT = 1 << 1;
+    private static final int MASK = 1 << 2;
+    private static final int ANY = ENCRYPT | DECRYPT | MASK;
+
+    /**
+     * 不遍历其内部的框架包，其中的容器类型（如IPage的实现）在判断包名之前处理
+     */
+    private static final String[] OPAQUE_PACKAGES = {"java.", "javax.", "jdk.", "sun.", "com.sun.",
+        "org.springframework.", "org.apache.ibatis.", "com.baomidou.", "com.fasterxml.", "org.slf4j."};
+
+    private static final FieldAccessor[] NO_CHILDREN = new FieldAccessor[0];
+    private static final TypeShape LEAF = new TypeShape(0, 0, NO_CHILDREN, new int[0]);
+
+    private static final ClassValue<TypeShape> SHAPES = new ClassValue<TypeShape>() {
+        @Override
+        protected TypeShape computeValue(Class<?> type) {
+            Class<?> userClass = ClassUtils.getUserClass(type);
+            return userClass != type ? SHAPES.get(userClass) : create(type);
+        }
+    };
+
+    /**
+     * 遍历目标
+     */
+    public enum Target {
+        /**
+         * 需要加密或生成摘要的对象
+         */
+        ENCRYPT(SecureObjectWalker.ENCRYPT),
+        /**
+         * 需要解密的对象，延迟解密代理自行解密，不收集
+         */
+        DECRYPT(SecureObjectWalker.DECRYPT),
+        /**
+         * 需要脱敏的对象
+         */
+        MASK(SecureObjectWalker.MASK);
+
+        private final int bit;
+
+        Target(int bit) {
+            this.bit = bit;
+        }
+    }
+
+    private SecureObjectWalker() {
+    }
+
+    /**
+     * 收集对象图中需要处理的对象
+     *
+     * @param root 根对象，可以是实体、DTO或容器
+     * @param target 遍历目标
+     * @return 需要处理的对象，没有时返回空列表
+     */
+    public static List<Object> collect(Object root, Target target) {
+        if (root == null) {
+            return Collections.emptyList();
+        }
+        Walk walk = new Walk(target);
+        walk.visit(root, 0);
+        return walk.found;
+    }
+
+    /**
+     * 判断对象图中是否可能包含需要处理的对象，用于在遍历前快速跳过
+     *
+     * @param root 根对象
+     * @param target 遍历目标
+     * @return 根对象的类型不可能包含目标对象时返回false；容器总是返回true
+     */
+    public static boolean mayContain(Object root, Target target) {
+        return root != null && (isContainer(root) || (SHAPES.get(root.getClass()).reachable & target.bit) != 0);
+    }
+
+    private static boolean isContainer(Object value) {
+        return value instanceof Collection || value instanceof Map || value instanceof Optional
+            || value instanceof Object[] || value instanceof IPage;
+    }
+
+    private static TypeShape create(Class<?> type) {
+        if (isOpaque(type) || type.isArray() || type.isEnum() || Proxy.isProxyClass(type)
+            || Wrapper.class.isAssignableFrom(type)) {
+            return LEAF;
+        }
+        ClassSecurityPlan plan = ClassSecurityPlan.of(type);
+        int own = (plan.hasSecureFields() ? ENCRYPT : 0) | (plan.hasDecryptFields() ? DECRYPT : 0)
+            | (plan.hasMaskFields() ? MASK : 0);
+
+        List<FieldAccessor> children = new ArrayList<>();
+        List<Integer> masks = new ArrayList<>();
+        int reachable = own;
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic() || field.getType().isPrimitive()) {
+                    continue;
+                }
+                int mask = reach(field.getGenericType(), new HashSet<>());
+                if (mask != 0) {
+                    children.add(new FieldAccessor(field));
+                    masks.add(mask);
+                    reachable |= mask;
+                }
+            }
+        }
+        if (reachable == 0) {
+            return LEAF;
+        }
+        int[] childMasks = new int[masks.size()];
+        for (int i = 0; i < childMasks.length; i++) {
+            childMasks[i] = masks.get(i);
+        }
+        return new TypeShape(own, reachable, children.toArray(NO_CHILDREN), childMasks);
+    }
+
+    /**
+     * 按声明类型计算字段可能引用到的目标，visited记录本次计算中已经访问过的类，用于处理类型之间的循环引用
+     */
+    private static int reach(Type type, Set<Class<?>> visited) {
+        if (type instanceof ParameterizedType) {
+            ParameterizedType parameterized = (ParameterizedType) type;
+            Class<?> raw = (Class<?>) parameterized.getRawType();
+            Type[] arguments = parameterized.getActualTypeArguments();
+            if (Collection.class.isAssignableFrom(raw) || Optional.class == raw || IPage.class.isAssignableFrom(raw)) {
+                return arguments.length == 1 ? reach(arguments[0], visited) : ANY;
+            }
+            if (Map.class.isAssignableFrom(raw)) {
+                return arguments.length == 2 ? reach(arguments[1], visited) : ANY;
+            }
+            return reach(raw, visited);
+        }
+        if (type instanceof GenericArrayType) {
+            return reach(((GenericArrayType) type).getGenericComponentType(), visited);
+        }
+        if (!(type instanceof Class)) {
+            // 类型变量和通配符无法静态确定
+            return ANY;
+        }
+
+        Class<?> c = (Class<?>) type;
+        if (c.isPrimitive() || c.isEnum()) {
+            return 0;
+        }
+        if (c.isArray()) {
+            return reach(c.getComponentType(), visited);
+        }
+        if (Collection.class.isAssignableFrom(c) || Map.class.isAssignableFrom(c) || Optional.class == c
+            || IPage.class.isAssignableFrom(c) || c == Object.class || c == java.io.Serializable.class) {
+            return ANY;
+        }
+        if (isOpaque(c)) {
+            return 0;
+        }
+        if (c.isInterface() || Modifier.isAbstract(c.getModifiers()) || !Modifier.isFinal(c.getModifiers())) {
+            // 运行时可能是任意实现类或子类
+            return ANY;
+        }
+        if (!visited.add(c)) {
+            return 0;
+        }
+        ClassSecurityPlan plan = ClassSecurityPlan.of(c);
+        int mask = (plan.hasSecureFields() ? ENCRYPT : 0) | (plan.hasDecryptFields() ? DECRYPT : 0)
+            | (plan.hasMaskFields() ? MASK : 0);
+        for (Class<?> owner = c; owner != null && owner != Object.class && mask != ANY; owner = owner.getSuperclass()) {
+            for (Field field : owner.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers()) && !field.getType().isPrimitive()) {
+                    mask |= reach(field.getGenericType(), visited);
+                }
+            }
+        }
+        return mask;
+    }
+
+    private static boolean isOpaque(Class<?> type) {
+        String name = type.getName();
+        for (String prefix : OPAQUE_PACKAGES) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 类的遍历信息
+     */
+    private static final class TypeShape {
+        private final int own;
+        private final int reachable;
+        private final FieldAccessor[] children;
+        private final int[] childMasks;
+
+        private TypeShape(int own, int reachable, FieldAccessor[] children, int[] childMasks) {
+            this.own = own;
+            this.reachable = reachable;
+            this.children = children;
+            this.childMasks = childMasks;
+        }
+    }
+
+    /**
+     * 一次遍历的状态
+     */
+    private static final class Walk {
+        private final Target target;
+        private final List<Object> found = new ArrayList<>();
+        private Set<Object> visited;
+
+        private Walk(Target target) {
+            this.target = target;
+        }
+
+        private void visit(Object value, int depth) {
+            if (value == null || depth > MAX_DEPTH) {
+                return;
+            }
+            if (isContainer(value)) {
+                if (markVisited(value)) {
+                    visitContainer(value, depth);
+                }
+                return;
+            }
+
+            TypeShape shape = SHAPES.get(value.getClass());
+            int bit = target.bit;
+            if ((shape.reachable & bit) == 0) {
+                return;
+            }
+            // 同一个对象可能从多条路径到达（如Map参数中的et和param1），只收集一次
+            if (!markVisited(value)) {
+                return;
+            }
+            if ((shape.own & bit) != 0 && !(target == Target.DECRYPT && value instanceof LazyDecryptable)) {
+                found.add(value);
+            }
+            for (int i = 0; i < shape.children.length; i++) {
+                if ((shape.childMasks[i] & bit) != 0) {
+                    visit(shape.children[i].get(value), depth + 1);
+                }
+            }
+        }
+
+        private void visitContainer(Object value, int depth) {
+            if (value instanceof Collection) {
+                for (Object element : (Collection<?>) value) {
+                    visit(element, depth + 1);
+                }
+            } else if (value instanceof Map) {
+                for (Object element : ((Map<?, ?>) value).values()) {
+                    visit(element, depth + 1);
+                }
+            } else if (value instanceof Optional) {
+                visit(((Optional<?>) value).orElse(null), depth + 1);
+            } else if (value instanceof Object[]) {
+                for (Object element : (Object[]) value) {
+                    visit(element, depth + 1);
+                }
+            } else {
+                visit(((IPage<?>) value).getRecords(), depth + 1);
+            }
+        }
+
+        private boolean markVisited(Object value) {
+            if (visited == null) {
+                visited = Collections.newSetFromMap(new IdentityHashMap<>());
+            }
+            return visited.add(value);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.livelab.security.starter.crypto;
+
+import org.bouncycastle.crypto.digests.SM3Digest;
+import org.bouncycastle.crypto.macs.HMac;
+import org.bouncycastle.crypto.params.KeyParameter;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+
+/**
+ * 使用JDK自带实现的AES/GCM引擎
+ *
+ * JDK的AES/GCM在支持AES-NI和CLMUL指令的CPU上由JIT内建函数硬件加速，吞吐量远高于软件实现的SM4。
+ * 该引擎不是国密算法，只适用于允许使用AES的部署环境。
+ *
+ * 输出格式：12字节随机IV + 密文 + 16字节认证标签。
+ * 每次加密使用新的随机IV，因此同一原文的密文每次都不同
+ *
+ * AES密钥不直接使用密钥表中的SM4密钥，而是按密钥ID派生：
+ * HMAC-SM3(SM4密钥, 引擎标签 || 密钥ID)的前16字节，派生结果按密钥ID缓存。
+ * 同一个密钥ID在不同算法下使用互不相关的密钥
+ */
+public class AesGcmCipherEngine implements CipherEngine {
+    public static final String NAME = "AES-GCM";
+    public static final int ID = 1;
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_BITS = 128;
+    private static final int KEY_LENGTH = 16;
+    private static final byte[] KEY_LABEL = "livelab-security/AES-GCM/v1".getBytes(StandardCharsets.US_ASCII);
+
+    private final ThreadLocal<Cipher> ciphers = ThreadLocal.withInitial(AesGcmCipherEngine::newCipher);
+    private final ThreadLocal<KeySlots<SecretKeySpec>> aesKeys = ThreadLocal.withInitial(KeySlots::new);
+    private final ThreadLocal<SecureRandom> randoms = ThreadLocal.withInitial(SecureRandom::new);
+    private final ThreadLocal<byte[]> ivs = ThreadLocal.withInitial(() -> new byte[IV_LENGTH]);
+
+    @Override
+    public int getId() {
+        return ID;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean isCompliant() {
+        return false;
+    }
+
+    @Override
+    public int getMaxOutputSize(int inputLength) {
+        return inputLength + IV_LENGTH + TAG_BITS / 8;
+    }
+
+    @Override
+    public int encrypt(long keyId, SecretKeySpec key, byte[] input, int inputLength, byte[] output) throws GeneralSecurityException {
+        byte[] iv = ivs.get();
+        randoms.get().nextBytes(iv);
+        // IV直接写在输出缓冲区开头，解密时从密文中取出
+        System.arraycopy(iv, 0, output, 0, IV_LENGTH);
+        Cipher cipher = ciphers.get();
+        cipher.init(Cipher.ENCRYPT_MODE, aesKey(keyId, key), new GCMParameterSpec(TAG_BITS, iv));
+        return IV_LENGTH + cipher.doFinal(input, 0, inputLength, output, IV_LENGTH);
+    }
+
+    @Override
+    public int decrypt(long keyId, SecretKeySpec key, byte[] input, int inputOffset, int inputLength, byte[] output) throws GeneralSecurityException {
+        if (inputLength < IV_LENGTH) {
+            throw new GeneralSecurityException("Ciphertext too short");
+        }
+        Cipher cipher = ciphers.get();
+        cipher.init(Cipher.DECRYPT_MODE, aesKey(keyId, key), new GCMParameterSpec(TAG_BITS, input, inputOffset, IV_LENGTH));
+        return cipher.doFinal(input, inputOffset + IV_LENGTH, inputLength - IV_LENGTH, output, 0);
+    }
+
+    private SecretKeySpec aesKey(long keyId, SecretKeySpec key) {
+        KeySlots<SecretKeySpec> slots = aesKeys.get();
+        SecretKeySpec aesKey = slots.find(keyId);
+        if (aesKey == null) {
+            aesKey = new SecretKeySpec(deriveKey(keyId, key.getEncoded()), "AES");
+            slots.put(keyId, aesKey);
+        }
+        return aesKey;
+    }
+
+    /**
+     * 从SM4密钥派生该密钥ID专用的AES密钥
+     */
+    static byte[] deriveKey(long keyId, byte[] masterKey) {
+        HMac hmac = new HMac(new SM3Digest());
+        hmac.init(new KeyParameter(masterKey));
+        hmac.update(KEY_LABEL, 0, KEY_LABEL.length);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            hmac.update((byte) (keyId >>> shift));
+        }
+        byte[] mac = new byte[hmac.getMacSize()];
+        hmac.doFinal(mac, 0);
+        byte[] aesKey = new byte[KEY_LENGTH];
+        System.arraycopy(mac, 0, aesKey, 0, KEY_LENGTH);
+        return aesKey;
+    }
+
+    private static Cipher newCipher() {
+        try {
+            return Cipher.getInstance("AES/GCM/NoPadding");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("AES/GCM is not available", e);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.livelab.security.starter.crypto;
+
+import org.bouncycastle.crypto.InvalidCipherTextException;
+import org.bouncycastle.crypto.engines.SM4Engine;
+import org.bouncycastle.crypto.paddings.PKCS7Padding;
+import org.bouncycastle.crypto.paddings.PaddedBufferedBlockCipher;
+import org.bouncycastle.crypto.params.KeyParameter;
+
+import javax.crypto.BadPaddingException;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+
+/**
+ * 直接使用BouncyCastle轻量级API（SM4Engine）的SM4/ECB引擎
+ *
+ * 不经过JCE的Provider查找和Cipher包装，输出与SM4/ECB/PKCS5Padding完全一致
+ * （16字节分组下PKCS7与PKCS5填充相同），可以与默认引擎混用
+ */
+public class BcSm4CipherEngine implements CipherEngine {
+    public static final String NAME = "SM4-BC";
+    private static final int BLOCK_SIZE = 16;
+
+    private final ThreadLocal<KeySlots<PaddedBufferedBlockCipher>> encryptCiphers = ThreadLocal.withInitial(KeySlots::new);
+    private final ThreadLocal<KeySlots<PaddedBufferedBlockCipher>> decryptCiphers = ThreadLocal.withInitial(KeySlots::new);
+
+    @Override
+    public int getId() {
+        return 0;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean isCompliant() {
+        return true;
+    }
+
+    @Override
+    public int getMaxOutputSize(int inputLength) {
+        return (inputLength / BLOCK_SIZE + 1) * BLOCK_SIZE;
+    }
+
+    @Override
+    public int encrypt(long keyId, SecretKeySpec key, byte[] input, int inputLength, byte[] output) throws GeneralSecurityException {
+        return process(encryptCiphers.get(), true, keyId, key, input, 0, inputLength, output);
+    }
+
+    @Override
+    public int decrypt(long keyId, SecretKeySpec key, byte[] input, int inputOffset, int inputLength, byte[] output) throws GeneralSecurityException {
+        return process(decryptCiphers.get(), false, keyId, key, input, inputOffset, inputLength, output);
+    }
+
+    private static int process(KeySlots<PaddedBufferedBlockCipher> slots, boolean forEncryption, long keyId, SecretKeySpec key,
+                               byte[] input, int inputOffset, int inputLength, byte[] output) throws GeneralSecurityException {
+        PaddedBufferedBlockCipher cipher = slots.find(keyId);
+        if (cipher == null) {
+            cipher = new PaddedBufferedBlockCipher(new SM4Engine(), new PKCS7Padding());
+            cipher.init(forEncryption, new KeyParameter(key.getEncoded()));
+            slots.put(keyId, cipher);
+        }
+        try {
+            int length = cipher.processBytes(input, inputOffset, inputLength, output, 0);
+            // doFinal会重置内部缓冲区但保留密钥扩展结果，实例可直接复用
+            return length + cipher.doFinal(output, length);
+        } catch (InvalidCipherTextException e) {
+            slots.invalidate(keyId);
+            BadPaddingException exception = new BadPaddingException(e.getMessage());
+            exception.initCause(e);
+            throw exception;
+        } catch (RuntimeException e) {
+            slots.invalidate(keyId);
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.livelab.security.starter.crypto;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+
+/**
+ * 字段加密引擎SPI
+ *
+ * 引擎只负责字节级的加解密，密钥管理、密文格式和Base64编码由CryptoUtil处理。
+ * 实现类需要保证线程安全，通常的做法是按线程缓存已用某个密钥初始化过的底层密码实例，
+ * 以密钥ID区分，避免每次调用重复执行密钥扩展
+ */
+public interface CipherEngine {
+
+    /**
+     * 引擎标识，写入密文头部，解密时据此选择引擎
+     * 所有输出与SM4/ECB/PKCS5Padding一致的引擎使用同一个标识0
+     */
+    int getId();
+
+    /**
+     * 引擎名称，与security.crypto.algorithm的取值对应
+     */
+    String getName();
+
+    /**
+     * 是否为国密合规算法
+     */
+    boolean isCompliant();
+
+    /**
+     * 加密或解密指定长度的输入时，输出可能占用的最大字节数
+     */
+    int getMaxOutputSize(int inputLength);
+
+    /**
+     * 加密
+     *
+     * @param keyId 密钥ID，用于复用已初始化的密码实例
+     * @param key 密钥
+     * @param input 原文缓冲区
+     * @param inputLength 原文长度
+     * @param output 输出缓冲区，容量不小于{@link #getMaxOutputSize(int)}
+     * @return 写入输出缓冲区的密文长度
+     */
+    int encrypt(long keyId, SecretKeySpec key, byte[] input, int inputLength, byte[] output) throws GeneralSecurityException;
+
+    /**
+     * 解密
+     *
+     * @param keyId 密钥ID，用于复用已初始化的密码实例
+     * @param key 密钥
+     * @param input 密文缓冲区
+     * @param inputOffset 密文在缓冲区中的起始位置
+     * @param inputLength 密文长度
+     * @param output 输出缓冲区，容量不小于{@link #getMaxOutputSize(int)}
+     * @return 写入输出缓冲区的原文长度
+     */
+    int decrypt(long keyId, SecretKeySpec key, byte[] input, int inputOffset, int inputLength, byte[] output) throws GeneralSecurityException;
+}
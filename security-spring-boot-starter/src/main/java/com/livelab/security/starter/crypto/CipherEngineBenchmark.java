@@ -0,0 +1,99 @@
+package com.livelab.security.starter.crypto;
+
+import com.livelab.security.starter.exception.SecurityException;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 加密引擎的内置微基准测试
+ *
+ * 以典型敏感字段长度的样本（手机号、身份证号级别）对每个引擎做若干轮加密+解密，
+ * 先预热使JIT完成编译，再计时。结果只用于在同一台机器上比较引擎的相对快慢，
+ * 不能替代JMH等专业测试
+ */
+@Slf4j
+public final class CipherEngineBenchmark {
+    /**
+     * 基准测试使用的密钥ID，不会与数据库中的自增ID冲突
+     */
+    private static final long BENCHMARK_KEY_ID = -1L;
+    private static final byte[] SAMPLE = "110101199003071234-13800138000".getBytes(StandardCharsets.UTF_8);
+
+    private CipherEngineBenchmark() {
+    }
+
+    /**
+     * 测量每个引擎单次加密+解密的平均耗时
+     *
+     * @param engines 参与测试的引擎
+     * @param rounds 计时轮数，预热轮数与之相同
+     * @return 引擎名称到平均耗时（纳秒）的映射，顺序与输入一致
+     */
+    public static Map<String, Long> measure(List<CipherEngine> engines, int rounds) {
+        byte[] keyBytes = new byte[16];
+        new SecureRandom().nextBytes(keyBytes);
+        SecretKeySpec key = new SecretKeySpec(keyBytes, "SM4");
+        int iterations = Math.max(1, rounds);
+
+        Map<String, Long> results = new LinkedHashMap<>();
+        for (CipherEngine engine : engines) {
+            byte[] encrypted = new byte[engine.getMaxOutputSize(SAMPLE.length)];
+            byte[] decrypted = new byte[engine.getMaxOutputSize(encrypted.length)];
+            try {
+                run(engine, key, encrypted, decrypted, iterations);
+                long start = System.nanoTime();
+                run(engine, key, encrypted, decrypted, iterations);
+                results.put(engine.getName(), (System.nanoTime() - start) / iterations);
+            } catch (GeneralSecurityException e) {
+                // 当前环境不支持的引擎不参与选择
+                log.warn("Cipher engine {} is not usable: {}", engine.getName(), e.getMessage());
+            }
+        }
+        log.info("Cipher engine benchmark (ns per encrypt+decrypt): {}", results);
+        return results;
+    }
+
+    /**
+     * 选择平均耗时最短的引擎
+     *
+     * @param engines 候选引擎
+     * @param rounds 计时轮数
+     * @return 最快的引擎
+     * @throws SecurityException 当所有引擎都不可用时抛出
+     */
+    public static CipherEngine fastest(List<CipherEngine> engines, int rounds) {
+        Map<String, Long> results = measure(engines, rounds);
+        CipherEngine fastest = null;
+        long best = Long.MAX_VALUE;
+        for (CipherEngine engine : engines) {
+            Long nanos = results.get(engine.getName());
+            if (nanos != null && nanos < best) {
+                best = nanos;
+                fastest = engine;
+            }
+        }
+        if (fastest == null) {
+            throw new SecurityException("No usable cipher engine");
+        }
+        return fastest;
+    }
+
+    private static void run(CipherEngine engine, SecretKeySpec key, byte[] encrypted, byte[] decrypted,
+                            int iterations) throws GeneralSecurityException {
+        int checksum = 0;
+        for (int i = 0; i < iterations; i++) {
+            int length = engine.encrypt(BENCHMARK_KEY_ID, key, SAMPLE, SAMPLE.length, encrypted);
+            checksum += engine.decrypt(BENCHMARK_KEY_ID, key, encrypted, 0, length, decrypted);
+        }
+        if (checksum != SAMPLE.length * iterations) {
+            throw new GeneralSecurityException("Round trip mismatch");
+        }
+    }
+}
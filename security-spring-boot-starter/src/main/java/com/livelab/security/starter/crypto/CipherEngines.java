@@ -0,0 +1,99 @@
+package com.livelab.security.starter.crypto;
+
+import com.livelab.security.starter.exception.SecurityException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 加密引擎的选择与注册
+ *
+ * 加密统一使用按security.crypto.algorithm选定的引擎；
+ * 解密按密文头部中的引擎标识选择引擎，因此切换算法后历史数据仍可解密：
+ * - 标识0：SM4/ECB，选定的引擎是SM4系列时直接使用它，否则使用默认的JCE实现
+ * - 标识1：AES/GCM
+ *
+ * algorithm取值：
+ * - SM4: JCE + BouncyCastle Provider（默认）
+ * - SM4-BC: BouncyCastle轻量级API，输出与SM4完全一致
+ * - AES-GCM: JDK自带的AES/GCM，可硬件加速，非国密算法
+ * - AUTO: 启动时对国密合规的引擎做一次微基准测试，选择本机最快的一个
+ */
+@Slf4j
+public final class CipherEngines {
+    public static final String AUTO = "AUTO";
+
+    private final CipherEngine encryptEngine;
+    private final CipherEngine[] decryptEngines = new CipherEngine[2];
+
+    /**
+     * @param encryptEngine 加密使用的引擎
+     */
+    public CipherEngines(CipherEngine encryptEngine) {
+        this.encryptEngine = encryptEngine;
+        decryptEngines[0] = encryptEngine.getId() == 0 ? encryptEngine : new JceSm4CipherEngine();
+        decryptEngines[AesGcmCipherEngine.ID] = encryptEngine.getId() == AesGcmCipherEngine.ID
+            ? encryptEngine : new AesGcmCipherEngine();
+    }
+
+    /**
+     * 使用默认SM4引擎
+     */
+    public static CipherEngines defaults() {
+        return new CipherEngines(new JceSm4CipherEngine());
+    }
+
+    /**
+     * 按配置的算法名称创建
+     *
+     * @param algorithm 算法名称，大小写不敏感
+     * @param benchmarkRounds AUTO模式下每个引擎的基准测试轮数
+     * @throws SecurityException 当算法名称不受支持时抛出
+     */
+    public static CipherEngines create(String algorithm, int benchmarkRounds) {
+        String name = algorithm == null ? JceSm4CipherEngine.NAME : algorithm.trim().toUpperCase(Locale.ROOT);
+        if (AUTO.equals(name)) {
+            List<CipherEngine> candidates = new ArrayList<>();
+            candidates.add(new JceSm4CipherEngine());
+            candidates.add(new BcSm4CipherEngine());
+            CipherEngine fastest = CipherEngineBenchmark.fastest(candidates, benchmarkRounds);
+            log.info("Selected cipher engine {} by benchmark", fastest.getName());
+            return new CipherEngines(fastest);
+        }
+        return new CipherEngines(newEngine(name));
+    }
+
+    /**
+     * 加密使用的引擎
+     */
+    public CipherEngine getEncryptEngine() {
+        return encryptEngine;
+    }
+
+    /**
+     * 按密文头部中的引擎标识获取解密引擎
+     *
+     * @throws SecurityException 当引擎标识未知时抛出
+     */
+    public CipherEngine forId(int engineId) {
+        if (engineId < 0 || engineId >= decryptEngines.length) {
+            throw new SecurityException("Unknown cipher engine id: " + engineId);
+        }
+        return decryptEngines[engineId];
+    }
+
+    private static CipherEngine newEngine(String name) {
+        switch (name) {
+            case JceSm4CipherEngine.NAME:
+                return new JceSm4CipherEngine();
+            case BcSm4CipherEngine.NAME:
+                return new BcSm4CipherEngine();
+            case AesGcmCipherEngine.NAME:
+                return new AesGcmCipherEngine();
+            default:
+                throw new SecurityException("Unsupported crypto algorithm: " + name);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.livelab.security.starter.crypto;
+
+import com.livelab.security.starter.exception.SecurityException;
+
+import java.util.Locale;
+
+/**
+ * 密文的存储格式，对应security.crypto.format
+ *
+ * 无论选择哪种格式，解密时都会自动识别两种格式，切换格式不影响已有数据的读取
+ */
+public enum CipherTextFormat {
+    /**
+     * $密钥ID$Base64编码的加密内容，密钥ID为十进制文本
+     */
+    LEGACY,
+    /**
+     * ~URL安全的Base64（无填充），内容为：1字节版本 + varint编码的密钥ID + 密文
+     * 版本字节的低4位是加密引擎标识，头部解析只需要解码前几个字符
+     */
+    COMPACT;
+
+    /**
+     * 按配置值解析，大小写不敏感，为空时使用LEGACY
+     *
+     * @throws SecurityException 当格式名称不受支持时抛出
+     */
+    public static CipherTextFormat of(String name) {
+        if (name == null || name.trim().isEmpty()) {
+            return LEGACY;
+        }
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new SecurityException("Unsupported cipher text format: " + name);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.livelab.security.starter.crypto;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.Security;
+
+/**
+ * 通过JCE使用BouncyCastle Provider的SM4/ECB/PKCS5Padding引擎（默认引擎）
+ *
+ * SM4/ECB没有IV，doFinal完成后Cipher会回到初始化后的状态，
+ * 因此同一线程对同一密钥可以反复使用已初始化的Cipher，省去getInstance和init（密钥扩展）的开销
+ */
+public class JceSm4CipherEngine implements CipherEngine {
+    public static final String NAME = "SM4";
+    private static final int BLOCK_SIZE = 16;
+
+    static {
+        if (Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null) {
+            Security.addProvider(new BouncyCastleProvider());
+        }
+    }
+
+    private final ThreadLocal<KeySlots<Cipher>> encryptCiphers = ThreadLocal.withInitial(KeySlots::new);
+    private final ThreadLocal<KeySlots<Cipher>> decryptCiphers = ThreadLocal.withInitial(KeySlots::new);
+
+    @Override
+    public int getId() {
+        return 0;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean isCompliant() {
+        return true;
+    }
+
+    @Override
+    public int getMaxOutputSize(int inputLength) {
+        return (inputLength / BLOCK_SIZE + 1) * BLOCK_SIZE;
+    }
+
+    @Override
+    public int encrypt(long keyId, SecretKeySpec key, byte[] input, int inputLength, byte[] output) throws GeneralSecurityException {
+        return process(encryptCiphers.get(), Cipher.ENCRYPT_MODE, keyId, key, input, 0, inputLength, output);
+    }
+
+    @Override
+    public int decrypt(long keyId, SecretKeySpec key, byte[] input, int inputOffset, int inputLength, byte[] output) throws GeneralSecurityException {
+        return process(decryptCiphers.get(), Cipher.DECRYPT_MODE, keyId, key, input, inputOffset, inputLength, output);
+    }
+
+    private static int process(KeySlots<Cipher> slots, int mode, long keyId, SecretKeySpec key,
+                               byte[] input, int inputOffset, int inputLength, byte[] output) throws GeneralSecurityException {
+        Cipher cipher = slots.find(keyId);
+        if (cipher == null) {
+            // 获取SM4算法实例，使用ECB模式和PKCS5Padding填充
+            // BC表示使用BouncyCastle作为加密提供者
+            cipher = Cipher.getInstance("SM4/ECB/PKCS5Padding", "BC");
+            cipher.init(mode, key);
+            slots.put(keyId, cipher);
+        }
+        try {
+            return cipher.doFinal(input, inputOffset, inputLength, output, 0);
+        } catch (GeneralSecurityException | RuntimeException e) {
+            slots.invalidate(keyId);
+            throw e;
+        }
+    }
+}
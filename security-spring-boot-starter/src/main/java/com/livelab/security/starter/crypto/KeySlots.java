@@ -0,0 +1,43 @@
+package com.livelab.security.starter.crypto;
+
+/**
+ * 线程私有的小容量密钥槽位，按密钥ID缓存已初始化的密码实例
+ *
+ * 槽位数很小，线性查找即可；满了之后按轮转方式替换。
+ * 实例不是线程安全的，应放在ThreadLocal中使用
+ */
+final class KeySlots<T> {
+    private static final int SLOTS = 4;
+
+    private final long[] keyIds = new long[SLOTS];
+    private final Object[] values = new Object[SLOTS];
+    private int next;
+
+    @SuppressWarnings("unchecked")
+    T find(long keyId) {
+        for (int i = 0; i < SLOTS; i++) {
+            if (keyIds[i] == keyId && values[i] != null) {
+                return (T) values[i];
+            }
+        }
+        return null;
+    }
+
+    void put(long keyId, T value) {
+        int slot = next;
+        next = (slot + 1) % SLOTS;
+        keyIds[slot] = keyId;
+        values[slot] = value;
+    }
+
+    /**
+     * 丢弃指定密钥的实例，加解密失败后调用，避免复用处于异常状态的实例
+     */
+    void invalidate(long keyId) {
+        for (int i = 0; i < SLOTS; i++) {
+            if (keyIds[i] == keyId) {
+                values[i] = null;
+            }
+        }
+    }
+}
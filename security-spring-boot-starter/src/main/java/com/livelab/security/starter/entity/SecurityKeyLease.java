@@ -0,0 +1,20 @@
+package com.livelab.security.starter.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+@Data
+@TableName("security_key_lease")
+public class SecurityKeyLease {
+    @TableId(type = IdType.INPUT)
+    private String leaseName;
+
+    private String owner;
+
+    private LocalDateTime expireTime;
+
+    private LocalDateTime updateTime;
+}
@@ -0,0 +1,55 @@
+package com.livelab.security.starter.handler;
+
+import com.livelab.security.starter.util.CryptoUtil;
+import org.apache.ibatis.type.BaseTypeHandler;
+import org.apache.ibatis.type.JdbcType;
+import org.apache.ibatis.type.MappedJdbcTypes;
+import org.apache.ibatis.type.MappedTypes;
+
+import java.sql.CallableStatement;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * 将加密字段存入VARBINARY列的类型处理器
+ *
+ * 紧凑格式的密文以原始字节存储（版本字节 + varint密钥ID + 密文），比Base64文本再小约四分之一；
+ * 传统格式的$密钥ID$密文以UTF-8字节存储，读取时按首字节区分两种格式，迁移期间可以混存。
+ *
+ * 使用方式：
+ * <pre>
+ * &#64;Encrypt
+ * &#64;TableField(typeHandler = CipherTextBinaryTypeHandler.class)
+ * private String phone;
+ * </pre>
+ * 实体类需要开启&#64;TableName(autoResultMap = true)，对应的列改为VARBINARY
+ */
+@MappedTypes(String.class)
+@MappedJdbcTypes(JdbcType.VARBINARY)
+public class CipherTextBinaryTypeHandler extends BaseTypeHandler<String> {
+
+    @Override
+    public void setNonNullParameter(PreparedStatement ps, int i, String parameter, JdbcType jdbcType) throws SQLException {
+        ps.setBytes(i, CryptoUtil.toBinary(parameter));
+    }
+
+    @Override
+    public String getNullableResult(ResultSet rs, String columnName) throws SQLException {
+        return toString(rs.getBytes(columnName));
+    }
+
+    @Override
+    public String getNullableResult(ResultSet rs, int columnIndex) throws SQLException {
+        return toString(rs.getBytes(columnIndex));
+    }
+
+    @Override
+    public String getNullableResult(CallableStatement cs, int columnIndex) throws SQLException {
+        return toString(cs.getBytes(columnIndex));
+    }
+
+    private static String toString(byte[] data) {
+        return data == null ? null : CryptoUtil.fromBinary(data);
+    }
+}
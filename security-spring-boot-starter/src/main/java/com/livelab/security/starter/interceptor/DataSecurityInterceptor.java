@@ -0,0 +1,74 @@
+package com.livelab.security.starter.interceptor;
+
+import com.livelab.security.starter.core.EntitySecurityProcessor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.resultset.ResultSetHandler;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * 数据安全的MyBatis拦截器，security.crypto.mode=interceptor时替代DataSecurityAspect
+ *
+ * 切面拦截的是Service和Mapper的方法，一次saveBatch会依次经过Service、内部的saveBatch和Mapper的insert，
+ * 同一批实体被重复扫描。拦截器工作在SQL执行层：
+ * - Executor.update：INSERT和UPDATE语句执行前加密参数中的实体，每一行只在发往JDBC前处理一次
+ * - ResultSetHandler.handleResultSets：结果映射完成后解密，每一行只处理一次，一级缓存中保存的是解密后的结果
+ *
+ * 参数和结果按对象图遍历，条件构造器等框架对象不遍历；游标查询（handleCursorResultSets）不做解密
+ */
+@Slf4j
+@Intercepts({
+    @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class}),
+    @Signature(type = ResultSetHandler.class, method = "handleResultSets", args = {Statement.class})
+})
+public class DataSecurityInterceptor implements Interceptor {
+    private final EntitySecurityProcessor processor;
+
+    /**
+     * @param processor 实体的加密、摘要和解密处理
+     */
+    public DataSecurityInterceptor(EntitySecurityProcessor processor) {
+        this.processor = processor;
+    }
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        processor.beginChain();
+        try {
+            return process(invocation);
+        } finally {
+            processor.endChain();
+        }
+    }
+
+    private Object process(Invocation invocation) throws Throwable {
+        if (invocation.getTarget() instanceof Executor) {
+            MappedStatement statement = (MappedStatement) invocation.getArgs()[0];
+            SqlCommandType commandType = statement.getSqlCommandType();
+            if (commandType == SqlCommandType.INSERT || commandType == SqlCommandType.UPDATE) {
+                // 多参数方法和MyBatis-Plus的条件更新以Map传参，同一个对象可能以多个键出现（如et和param1），只处理一次
+                // 只有INSERT能确定null字段在数据库中没有旧摘要，见EntitySecurityProcessor的摘要密钥版本说明
+                processor.encryptGraph(invocation.getArgs()[1], commandType == SqlCommandType.INSERT);
+            }
+            return invocation.proceed();
+        }
+
+        Object result = invocation.proceed();
+        if (result instanceof List) {
+            try {
+                processor.decryptGraph(result);
+            } catch (Exception e) {
+                log.error("Error processing result in security interceptor: {}", e.getMessage());
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,9 @@
+package com.livelab.security.starter.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.livelab.security.starter.entity.SecurityKeyLease;
+import org.apache.ibatis.annotations.Mapper;
+
+@Mapper
+public interface SecurityKeyLeaseMapper extends BaseMapper<SecurityKeyLease> {
+}
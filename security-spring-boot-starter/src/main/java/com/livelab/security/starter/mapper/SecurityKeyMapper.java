@@ -3,7 +3,19 @@ package com.livelab.security.starter.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.livelab.security.starter.entity.SecurityKey;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.Collection;
+import java.util.List;
 
 @Mapper
 public interface SecurityKeyMapper extends BaseMapper<SecurityKey> {
+
+    /**
+     * 按ID批量查询密钥值，只返回id和key_value两列
+     *
+     * @param ids 密钥ID集合
+     * @return 查询到的密钥
+     */
+    List<SecurityKey> selectKeyValuesByIds(@Param("ids") Collection<Long> ids);
 }
@@ -0,0 +1,436 @@
+package com.livelab.security.starter.processor;
+
+import com.livelab.security.starter.annotation.Decrypt;
+import com.livelab.security.starter.annotation.Digest;
+import com.livelab.security.starter.annotation.Encrypt;
+import com.livelab.security.starter.annotation.Mask;
+import com.livelab.security.starter.codec.SecurityCodecs;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 编译期为实体类生成SecurityCodec的注解处理器
+ *
+ * 处理规则与运行时的ClassSecurityPlan一致：
+ * 1. 收集类及其父类中带有@Encrypt、@Decrypt、@Digest、@Mask注解的String字段
+ * 2. @Decrypt只在同时带有@Encrypt时生效，@Digest写入{字段名}Digest字段
+ * 3. 加密字段中已经是密文的值不重复加密，也不计算摘要
+ * 4. 通过getter/setter读写字段，要求方法已显式声明或由Lombok的@Data、@Getter、@Setter生成
+ *
+ * 以下情况不生成编解码器，运行时回退到反射，并输出编译提示：
+ * 嵌套类、抽象类、泛型类、注解字段类型不是String、缺少可访问的getter/setter、使用了Lombok的@Accessors
+ *
+ * 随starter通过META-INF/services注册，引入starter的模块编译时自动执行
+ */
+public class SecurityCodecProcessor extends AbstractProcessor {
+    private static final String LOMBOK_DATA = "lombok.Data";
+    private static final String LOMBOK_VALUE = "lombok.Value";
+    private static final String LOMBOK_GETTER = "lombok.Getter";
+    private static final String LOMBOK_SETTER = "lombok.Setter";
+    private static final String LOMBOK_ACCESSORS = "lombok.experimental.Accessors";
+
+    private final Set<String> processed = new HashSet<>();
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return new LinkedHashSet<>(Arrays.asList(Encrypt.class.getName(), Decrypt.class.getName(),
+            Digest.class.getName(), Mask.class.getName()));
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        Set<TypeElement> types = new LinkedHashSet<>();
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() == ElementKind.FIELD) {
+                    types.add((TypeElement) element.getEnclosingElement());
+                }
+            }
+        }
+        for (TypeElement type : types) {
+            if (processed.add(type.getQualifiedName().toString())) {
+                generate(type);
+            }
+        }
+        // 不独占这些注解，其他处理器仍可处理
+        return false;
+    }
+
+    private void generate(TypeElement type) {
+        if (type.getKind() != ElementKind.CLASS || type.getNestingKind() != NestingKind.TOP_LEVEL) {
+            skip(type, "only top-level classes are supported");
+            return;
+        }
+        if (type.getModifiers().contains(Modifier.ABSTRACT) || !type.getTypeParameters().isEmpty()) {
+            skip(type, "abstract or generic class");
+            return;
+        }
+
+        List<FieldSpec> fields = new ArrayList<>();
+        for (TypeElement owner = type; owner != null; owner = superclassOf(owner)) {
+            for (VariableElement field : ElementFilter.fieldsIn(owner.getEnclosedElements())) {
+                if (field.getModifiers().contains(Modifier.STATIC)) {
+                    continue;
+                }
+                boolean encrypt = field.getAnnotation(Encrypt.class) != null;
+                boolean decrypt = encrypt && field.getAnnotation(Decrypt.class) != null;
+                boolean digest = field.getAnnotation(Digest.class) != null;
+                Mask mask = field.getAnnotation(Mask.class);
+                if (!encrypt && !digest && mask == null) {
+                    continue;
+                }
+                // 运行时只处理可以赋值为String的字段
+                if (!processingEnv.getTypeUtils().isAssignable(stringType(), field.asType())) {
+                    continue;
+                }
+                if (!isString(field.asType())) {
+                    skip(type, "field " + field.getSimpleName() + " is not declared as String");
+                    return;
+                }
+                if (!hasAccessor(type, owner, field, "get", 0) || !hasAccessor(type, owner, field, "set", 1)) {
+                    skip(type, "no accessible getter/setter for field " + field.getSimpleName());
+                    return;
+                }
+
+                String digestField = null;
+                if (digest) {
+                    String digestName = field.getSimpleName() + "Digest";
+                    VariableElement digestElement = findField(type, digestName);
+                    if (digestElement == null) {
+                        processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                            "No digest field found for " + type.getQualifiedName() + "." + field.getSimpleName(), field);
+                    } else if (!isString(digestElement.asType())) {
+                        skip(type, "digest field " + digestName + " is not declared as String");
+                        return;
+                    } else if (!hasAccessor(type, (TypeElement) digestElement.getEnclosingElement(), digestElement, "set", 1)) {
+                        skip(type, "no accessible setter for digest field " + digestName);
+                        return;
+                    } else {
+                        digestField = digestName;
+                    }
+                }
+                fields.add(new FieldSpec(field.getSimpleName().toString(), encrypt, decrypt, digestField, mask));
+            }
+        }
+        if (fields.isEmpty()) {
+            return;
+        }
+
+        String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        String codecName = type.getSimpleName() + SecurityCodecs.CLASS_SUFFIX;
+        String qualifiedName = packageName.isEmpty() ? codecName : packageName + "." + codecName;
+        try (Writer writer = processingEnv.getFiler().createSourceFile(qualifiedName, type).openWriter()) {
+            writer.write(render(packageName, type.getSimpleName().toString(), codecName, fields));
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                "Failed to write " + qualifiedName + ": " + e.getMessage(), type);
+        }
+    }
+
+    private String render(String packageName, String entity, String codecName, List<FieldSpec> fields) {
+        boolean hasEncrypt = false;
+        boolean hasMask = false;
+        for (FieldSpec field : fields) {
+            hasEncrypt |= field.encrypt;
+            hasMask |= field.mask != null;
+        }
+
+        SourceWriter out = new SourceWriter();
+        if (!packageName.isEmpty()) {
+            out.line("package " + packageName + ";").line();
+        }
+        if (hasMask) {
+            out.line("import com.livelab.security.starter.annotation.Mask;");
+        }
+        out.line("import com.livelab.security.starter.codec.SecurityCodec;");
+        if (hasEncrypt) {
+            out.line("import com.livelab.security.starter.util.CryptoUtil;");
+        }
+        if (hasMask) {
+            out.line("import com.livelab.security.starter.util.MaskUtil;");
+        }
+        out.line()
+            .line("import java.util.Iterator;")
+            .line("import java.util.List;")
+            .line()
+            .line("/**")
+            .line(" * 由SecurityCodecProcessor根据" + entity + "的安全注解生成，请勿手动修改")
+            .line(" */")
+            .open("public final class " + codecName + " implements SecurityCodec<" + entity + ">");
+
+        out.line("@Override").open("public Class<" + entity + "> getType()")
+            .line("return " + entity + ".class;").close().line();
+
+        out.line("@Override").open("public void collectEncrypt(" + entity + " entity, List<String> values)");
+        for (FieldSpec field : fields) {
+            if (field.encrypt) {
+                out.open("").line("String value = entity." + field.getter() + "();")
+                    .open("if (" + field.plainCondition() + ")").line("values.add(value);").close().close();
+            }
+        }
+        out.close().line();
+
+        out.line("@Override").open("public void collectDigest(" + entity + " entity, List<String> values)");
+        for (FieldSpec field : fields) {
+            if (field.digestField != null) {
+                out.open("").line("String value = entity." + field.getter() + "();")
+                    .open("if (" + field.plainCondition() + ")").line("values.add(value);").close().close();
+            }
+        }
+        out.close().line();
+
+        out.line("@Override").open("public void applyDigest(" + entity + " entity, Iterator<String> digests)");
+        for (FieldSpec field : fields) {
+            if (field.digestField != null) {
+                out.open("").line("String value = entity." + field.getter() + "();")
+                    .open("if (" + field.plainCondition() + ")")
+                    .line("entity." + setter(field.digestField) + "(digests.next());").close().close();
+            }
+        }
+        out.close().line();
+
+        out.line("@Override").open("public void applyEncrypt(" + entity + " entity, Iterator<String> values)");
+        for (FieldSpec field : fields) {
+            if (field.encrypt) {
+                out.open("").line("String value = entity." + field.getter() + "();")
+                    .open("if (" + field.plainCondition() + ")")
+                    .line("entity." + field.setter() + "(values.next());").close().close();
+            }
+        }
+        out.close().line();
+
+        out.line("@Override").open("public void collectDecrypt(" + entity + " entity, List<String> values)");
+        for (FieldSpec field : fields) {
+            if (field.decrypt) {
+                out.open("").line("String value = entity." + field.getter() + "();")
+                    .open("if (value != null && CryptoUtil.isEncrypted(value))")
+                    .line("values.add(value);").close().close();
+            }
+        }
+        out.close().line();
+
+        out.line("@Override").open("public void applyDecrypt(" + entity + " entity, Iterator<String> values)");
+        for (FieldSpec field : fields) {
+            if (field.decrypt) {
+                out.open("").line("String value = entity." + field.getter() + "();")
+                    .open("if (value != null && CryptoUtil.isEncrypted(value))")
+                    .line("entity." + field.setter() + "(values.next());").close().close();
+            }
+        }
+        out.close().line();
+
+        out.line("@Override").open("public void mask(" + entity + " entity)");
+        for (FieldSpec field : fields) {
+            if (field.mask != null) {
+                out.open("").line("String value = entity." + field.getter() + "();")
+                    .open("if (value != null)")
+                    .line("entity." + field.setter() + "(MaskUtil.maskValue(value, Mask.MaskType." + field.mask.type().name()
+                        + ", " + processingEnv.getElementUtils().getConstantExpression(field.mask.pattern()) + "));")
+                    .close().close();
+            }
+        }
+        out.close();
+
+        return out.close().toString();
+    }
+
+    private void skip(TypeElement type, String reason) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+            "Security codec not generated for " + type.getQualifiedName() + " (" + reason + "), reflection will be used", type);
+    }
+
+    private TypeElement superclassOf(TypeElement type) {
+        TypeMirror superclass = type.getSuperclass();
+        if (superclass.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        TypeElement element = (TypeElement) ((DeclaredType) superclass).asElement();
+        return element.getQualifiedName().contentEquals(Object.class.getName()) ? null : element;
+    }
+
+    private VariableElement findField(TypeElement type, String name) {
+        for (TypeElement owner = type; owner != null; owner = superclassOf(owner)) {
+            for (VariableElement field : ElementFilter.fieldsIn(owner.getEnclosedElements())) {
+                if (field.getSimpleName().contentEquals(name)) {
+                    return field;
+                }
+            }
+        }
+        return null;
+    }
+
+    private TypeMirror stringType() {
+        return processingEnv.getElementUtils().getTypeElement(String.class.getName()).asType();
+    }
+
+    private boolean isString(TypeMirror type) {
+        return processingEnv.getTypeUtils().isSameType(type, stringType());
+    }
+
+    /**
+     * 判断字段的getter/setter对生成的编解码器是否可访问
+     * 编解码器与实体位于同一个包中，父类在其他包中时只接受public方法
+     */
+    private boolean hasAccessor(TypeElement type, TypeElement owner, VariableElement field, String prefix, int parameters) {
+        boolean samePackage = processingEnv.getElementUtils().getPackageOf(type)
+            .equals(processingEnv.getElementUtils().getPackageOf(owner));
+        String name = prefix + capitalize(field.getSimpleName().toString());
+        for (ExecutableElement method : ElementFilter.methodsIn(owner.getEnclosedElements())) {
+            if (method.getSimpleName().contentEquals(name) && method.getParameters().size() == parameters) {
+                return isAccessible(method.getModifiers(), samePackage);
+            }
+        }
+
+        if (findAnnotation(owner, LOMBOK_ACCESSORS) != null || findAnnotation(field, LOMBOK_ACCESSORS) != null) {
+            return false;
+        }
+        String lombok = "get".equals(prefix) ? LOMBOK_GETTER : LOMBOK_SETTER;
+        AnnotationMirror onField = findAnnotation(field, lombok);
+        if (onField != null) {
+            return isLombokAccessible(onField, samePackage);
+        }
+        AnnotationMirror onClass = findAnnotation(owner, lombok);
+        if (onClass != null) {
+            return isLombokAccessible(onClass, samePackage);
+        }
+        return findAnnotation(owner, LOMBOK_DATA) != null
+            || ("get".equals(prefix) && findAnnotation(owner, LOMBOK_VALUE) != null);
+    }
+
+    private static boolean isAccessible(Set<Modifier> modifiers, boolean samePackage) {
+        return modifiers.contains(Modifier.PUBLIC) || (samePackage && !modifiers.contains(Modifier.PRIVATE));
+    }
+
+    private static boolean isLombokAccessible(AnnotationMirror annotation, boolean samePackage) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : annotation.getElementValues().entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals("value")) {
+                String level = ((VariableElement) entry.getValue().getValue()).getSimpleName().toString();
+                return "PUBLIC".equals(level)
+                    || (samePackage && ("PACKAGE".equals(level) || "PROTECTED".equals(level) || "MODULE".equals(level)));
+            }
+        }
+        return true;
+    }
+
+    private static AnnotationMirror findAnnotation(Element element, String annotationName) {
+        for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+            TypeElement annotationType = (TypeElement) annotation.getAnnotationType().asElement();
+            if (annotationType.getQualifiedName().contentEquals(annotationName)) {
+                return annotation;
+            }
+        }
+        return null;
+    }
+
+    private static String setter(String fieldName) {
+        return "set" + capitalize(fieldName);
+    }
+
+    private static String capitalize(String name) {
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    /**
+     * 生成代码中的一个字段
+     */
+    private static final class FieldSpec {
+        private final String name;
+        private final boolean encrypt;
+        private final boolean decrypt;
+        private final String digestField;
+        private final Mask mask;
+
+        private FieldSpec(String name, boolean encrypt, boolean decrypt, String digestField, Mask mask) {
+            this.name = name;
+            this.encrypt = encrypt;
+            this.decrypt = decrypt;
+            this.digestField = digestField;
+            this.mask = mask;
+        }
+
+        private String getter() {
+            return "get" + capitalize(name);
+        }
+
+        private String setter() {
+            return SecurityCodecProcessor.setter(name);
+        }
+
+        /**
+         * 字段值需要加密或计算摘要的条件，加密字段中已经是密文的值跳过
+         */
+        private String plainCondition() {
+            return encrypt ? "value != null && !CryptoUtil.isEncrypted(value)" : "value != null";
+        }
+    }
+
+    /**
+     * 按四个空格缩进输出源码
+     */
+    private static final class SourceWriter {
+        private final StringBuilder source = new StringBuilder();
+        private int indent;
+
+        private SourceWriter line() {
+            source.append('\n');
+            return this;
+        }
+
+        private SourceWriter line(String code) {
+            for (int i = 0; i < indent; i++) {
+                source.append("    ");
+            }
+            source.append(code).append('\n');
+            return this;
+        }
+
+        /**
+         * 输出代码块的开始，header为空时输出单独的局部作用域
+         */
+        private SourceWriter open(String header) {
+            line(header.isEmpty() ? "{" : header + " {");
+            indent++;
+            return this;
+        }
+
+        private SourceWriter close() {
+            indent--;
+            return line("}");
+        }
+
+        @Override
+        public String toString() {
+            return source.toString();
+        }
+    }
+}
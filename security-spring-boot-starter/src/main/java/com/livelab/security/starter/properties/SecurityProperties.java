@@ -3,15 +3,176 @@ package com.livelab.security.starter.properties;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 @Data
 @ConfigurationProperties(prefix = "security")
 public class SecurityProperties {
     private CryptoProperties crypto = new CryptoProperties();
+    private DigestProperties digest = new DigestProperties();
+    private WarmUpProperties warmUp = new WarmUpProperties();
 
     @Data
     public static class CryptoProperties {
+        /**
+         * 加密引擎：SM4（默认）、SM4-BC、AES-GCM（非国密）、AUTO（按基准测试选择最快的国密引擎）
+         */
         private String algorithm = "SM4";
+        /**
+         * AUTO模式下每个引擎的基准测试轮数
+         */
+        private int benchmarkRounds = 20000;
+        /**
+         * 密文存储格式：
+         * - legacy: $密钥ID$Base64（默认）
+         * - compact: ~URL安全Base64(版本字节 + varint密钥ID + 密文)，更短且头部解析更快
+         * 解密时两种格式都能识别
+         */
+        private String format = "legacy";
         private int keyExpireMinutes = 30;
+        /**
+         * 当前密钥到期前多少秒开始切换到下一个密钥
+         */
+        private int keyRefreshAheadSeconds = 30;
+        /**
+         * 后台密钥刷新任务的执行间隔（毫秒）
+         */
+        private long keyRefreshIntervalMillis = 5000;
+        /**
+         * 解密密钥缓存的最大条目数
+         */
+        private int keyCacheCapacity = 1024;
+        /**
+         * 密钥轮换模式：
+         * - local: 每个节点独立生成密钥
+         * - coordinated: 通过数据库租约选出一个节点生成密钥，其他节点只读取
+         */
+        private String rotationMode = "local";
+        /**
+         * 协调模式下租约时长（秒）
+         */
+        private int rotationLeaseSeconds = 30;
+        /**
+         * 协调模式下租约持有者在最新密钥到期前多少秒生成下一个密钥，应大于keyRefreshAheadSeconds
+         */
+        private int keyPregenerateSeconds = 60;
+        /**
+         * 大结果集并行解密配置
+         */
+        private ParallelProperties parallel = new ParallelProperties();
+        /**
+         * 流水线批量写入配置
+         */
+        private BatchWriteProperties batchWrite = new BatchWriteProperties();
+        /**
+         * 解密结果缓存配置
+         */
+        private DecryptCacheProperties decryptCache = new DecryptCacheProperties();
+        /**
+         * 是否延迟解密：查询结果中的实体替换为代理，加密字段在第一次读取时才解密
+         */
+        private boolean lazyDecrypt = false;
+        /**
+         * 与MyBatis的集成方式：
+         * - aspect: 通过AOP拦截Service和Mapper的方法（默认）
+         * - interceptor: 通过MyBatis拦截器在SQL执行前加密、结果映射后解密，每行只处理一次
+         */
+        private String mode = "aspect";
+    }
+
+    /**
+     * 摘要（盲索引）配置，盐和算法由DigestUtil通过security.digest.salt、security.digest.algorithm读取
+     */
+    @Data
+    public static class DigestProperties {
+        /**
+         * 摘要模式：
+         * - salted: SM3(原文 + 盐)（默认），摘要版本为0
+         * - hmac: HMAC-SM3(索引密钥, 原文)，摘要版本为索引密钥的版本
+         */
+        private String mode = "salted";
+        /**
+         * hmac模式下新写入使用的索引密钥版本
+         */
+        private int activeVersion = 1;
+        /**
+         * hmac模式下的索引密钥，版本号到Base64编码密钥的映射，如security.digest.keys.1=...
+         * 重建索引期间同时配置新旧两个版本，查询时两个版本的摘要都会匹配
+         */
+        private Map<Integer, String> keys = new LinkedHashMap<>();
+        /**
+         * 按加密字段批量查询时每条IN条件最多包含的摘要数，超过时拆分为多次查询
+         */
+        private int lookupChunkSize = 500;
+    }
+
+    /**
+     * 解密结果缓存配置
+     */
+    @Data
+    public static class DecryptCacheProperties {
+        /**
+         * 是否缓存解密结果
+         */
+        private boolean enabled = false;
+        /**
+         * 最大缓存条目数
+         */
+        private int maxEntries = 10000;
+        /**
+         * 条目的存活时间（秒）
+         */
+        private long ttlSeconds = 300;
+    }
+
+    /**
+     * 并行解密配置
+     */
+    @Data
+    public static class ParallelProperties {
+        /**
+         * 是否启用并行解密
+         */
+        private boolean enabled = false;
+        /**
+         * 结果集元素数达到该值时才并行解密，启用时必须为正数，最小为512（两个分片），更小的值按512处理
+         */
+        private int threshold = 1000;
+        /**
+         * 并行解密专用线程池的并行度，默认使用一半的CPU核数
+         */
+        private int parallelism = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    }
+
+    /**
+     * 流水线批量写入配置
+     */
+    @Data
+    public static class BatchWriteProperties {
+        /**
+         * 加密工作线程数，默认使用一半的CPU核数
+         */
+        private int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        /**
+         * 每次批量写入最多提前加密的分片数
+         */
+        private int queueCapacity = 2;
+    }
+
+    /**
+     * 启动预热配置
+     */
+    @Data
+    public static class WarmUpProperties {
+        /**
+         * 是否在应用就绪前执行预热
+         */
+        private boolean enabled = false;
+        /**
+         * 加密、解密、摘要各执行的轮数
+         */
+        private int rounds = 2000;
     }
 
     public int getKeyExpireMinutes() {
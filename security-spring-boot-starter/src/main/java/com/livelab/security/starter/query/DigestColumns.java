@@ -0,0 +1,135 @@
+package com.livelab.security.starter.query;
+
+import com.baomidou.mybatisplus.core.metadata.TableFieldInfo;
+import com.baomidou.mybatisplus.core.metadata.TableInfo;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.baomidou.mybatisplus.core.toolkit.LambdaUtils;
+import com.baomidou.mybatisplus.core.toolkit.support.LambdaMeta;
+import com.baomidou.mybatisplus.core.toolkit.support.SFunction;
+import com.livelab.security.starter.core.ClassSecurityPlan;
+import com.livelab.security.starter.core.ClassSecurityPlan.SecureField;
+import com.livelab.security.starter.exception.SecurityException;
+import org.apache.ibatis.reflection.property.PropertyNamer;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 加密字段到摘要列的映射
+ *
+ * 按实体类分析一次：@Digest字段配对的{字段名}Digest字段，再通过MyBatis-Plus的TableInfo得到其列名。
+ * 方法引用对应的属性名按Lambda类缓存，同一个调用点的User::getPhone只解析一次SerializedLambda
+ */
+final class DigestColumns {
+    private static final ClassValue<Map<String, DigestColumn>> COLUMNS = new ClassValue<Map<String, DigestColumn>>() {
+        @Override
+        protected Map<String, DigestColumn> computeValue(Class<?> type) {
+            return resolve(type);
+        }
+    };
+
+    /**
+     * 按Lambda类缓存的属性，ClassValue只能拿到类，首次使用时由调用方的方法引用实例填入
+     */
+    private static final ClassValue<AtomicReference<LambdaProperty>> PROPERTIES =
+        new ClassValue<AtomicReference<LambdaProperty>>() {
+            @Override
+            protected AtomicReference<LambdaProperty> computeValue(Class<?> type) {
+                return new AtomicReference<>();
+            }
+        };
+
+    private DigestColumns() {
+    }
+
+    /**
+     * 获取加密字段对应的摘要列名
+     *
+     * @param entityClass 实体类，为null时使用方法引用的实例化类
+     * @param column 加密字段的getter方法引用
+     * @return 摘要列
+     * @throws SecurityException 当字段没有配对的摘要列时抛出
+     */
+    static <T> DigestColumn of(Class<T> entityClass, SFunction<T, ?> column) {
+        LambdaProperty property = property(column);
+        Class<?> type = entityClass != null ? entityClass : property.instantiatedClass;
+        DigestColumn digestColumn = COLUMNS.get(type).get(property.name);
+        if (digestColumn == null) {
+            throw new SecurityException("No digest column for " + type.getName() + "." + property.name
+                + ", the field must have @Digest and a mapped " + property.name + "Digest field");
+        }
+        return digestColumn;
+    }
+
+    private static LambdaProperty property(SFunction<?, ?> column) {
+        // 方法引用每个调用点只有一个Lambda类，解析结果可以按类缓存
+        AtomicReference<LambdaProperty> cached = PROPERTIES.get(column.getClass());
+        LambdaProperty property = cached.get();
+        if (property == null) {
+            LambdaMeta meta = LambdaUtils.extract(column);
+            property = new LambdaProperty(PropertyNamer.methodToProperty(meta.getImplMethodName()),
+                meta.getInstantiatedClass());
+            cached.set(property);
+        }
+        return property;
+    }
+
+    private static Map<String, DigestColumn> resolve(Class<?> type) {
+        TableInfo tableInfo = TableInfoHelper.getTableInfo(type);
+        if (tableInfo == null) {
+            throw new SecurityException("No MyBatis-Plus table info for " + type.getName());
+        }
+        Map<String, DigestColumn> columns = new HashMap<>();
+        for (SecureField field : ClassSecurityPlan.of(type).getSecureFields()) {
+            if (!field.isDigest() || !field.hasDigestField()) {
+                continue;
+            }
+            for (TableFieldInfo fieldInfo : tableInfo.getFieldList()) {
+                if (fieldInfo.getProperty().equals(field.getDigestFieldName())) {
+                    columns.put(field.getName(), new DigestColumn(fieldInfo.getColumn(), field));
+                    break;
+                }
+            }
+        }
+        return Collections.unmodifiableMap(columns);
+    }
+
+    /**
+     * 加密字段及其摘要列
+     */
+    static final class DigestColumn {
+        private final String column;
+        private final SecureField field;
+
+        private DigestColumn(String column, SecureField field) {
+            this.column = column;
+            this.field = field;
+        }
+
+        /**
+         * 摘要列名
+         */
+        String getColumn() {
+            return column;
+        }
+
+        /**
+         * 读取实体中的摘要值
+         */
+        Object getDigest(Object entity) {
+            return field.getDigest(entity);
+        }
+    }
+
+    private static final class LambdaProperty {
+        private final String name;
+        private final Class<?> instantiatedClass;
+
+        private LambdaProperty(String name, Class<?> instantiatedClass) {
+            this.name = name;
+            this.instantiatedClass = instantiatedClass;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.livelab.security.starter.query;
+
+import com.baomidou.mybatisplus.core.toolkit.support.SFunction;
+import com.livelab.security.starter.query.DigestColumns.DigestColumn;
+import com.livelab.security.starter.util.DigestUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * 按加密字段批量查询
+ *
+ * 逐个调用按手机号、身份证号查询时每个值一次数据库往返，对账、去重等任务一次需要解析成百上千个值。批量查询时：
+ * 1. 去掉重复和空的明文后，整批共用当前线程的摘要状态计算所有密钥版本的摘要
+ * 2. 摘要按lookupChunkSize分片，每片一条 摘要列 IN (...) 查询，命中摘要列上的索引；同一明文的各版本摘要不会拆到两片
+ * 3. 每片的查询结果经过数据安全切面或MyBatis拦截器时作为一个列表整体解密（大结果集并行解密）
+ * 4. 按结果中的摘要值映射回输入的明文，摘要字段未被查询时退化为按解密后的字段值映射
+ *
+ * 例如：
+ * secureBatchLookup.lookup(User::getPhone, phones, wrapper -&gt; userService.list(wrapper.eq(User::getDeleted, 0)))
+ */
+@Slf4j
+public class SecureBatchLookup {
+    private final DigestUtil digestUtil;
+    private final int chunkSize;
+
+    /**
+     * @param digestUtil 摘要工具，必须与写入时使用的是同一个实例或相同配置
+     * @param chunkSize 每条IN条件最多包含的摘要数
+     */
+    public SecureBatchLookup(DigestUtil digestUtil, int chunkSize) {
+        this.digestUtil = digestUtil;
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    /**
+     * 按加密字段批量查询
+     *
+     * @param column 带有@Digest的加密字段，如User::getPhone
+     * @param values 明文，忽略其中的null、空字符串和重复值
+     * @param finder 执行一个分片的查询，参数已包含摘要条件，可以继续追加其他条件
+     * @return 按输入顺序排列的明文到匹配实体的映射，每个有效明文都有一项，没有匹配时为空列表
+     * @throws com.livelab.security.starter.exception.SecurityException 当字段没有配对的摘要列时抛出
+     */
+    public <T> Map<String, List<T>> lookup(SFunction<T, ?> column, Collection<String> values,
+                                           Function<SecureLambdaQueryWrapper<T>, List<T>> finder) {
+        DigestColumn digestColumn = DigestColumns.of(null, column);
+        Set<String> distinct = new LinkedHashSet<>();
+        for (String value : values) {
+            if (value != null && !value.isEmpty()) {
+                distinct.add(value);
+            }
+        }
+        Map<String, List<T>> result = new LinkedHashMap<>(distinct.size() * 4 / 3 + 1);
+        if (distinct.isEmpty()) {
+            return result;
+        }
+        for (String value : distinct) {
+            result.put(value, new ArrayList<>(1));
+        }
+
+        List<String> inputs = new ArrayList<>(distinct);
+        List<List<String>> candidates = digestUtil.digestCandidatesAll(inputs);
+        Map<String, String> valueByDigest = new HashMap<>(inputs.size() * 4 / 3 + 1);
+        List<String> chunk = new ArrayList<>(Math.min(chunkSize, inputs.size()));
+        int queries = 0;
+        for (int i = 0; i < inputs.size(); i++) {
+            List<String> digests = candidates.get(i);
+            if (!chunk.isEmpty() && chunk.size() + digests.size() > chunkSize) {
+                query(digestColumn, column, chunk, finder, valueByDigest, result);
+                queries++;
+                chunk = new ArrayList<>(chunk.size());
+            }
+            for (String digest : digests) {
+                chunk.add(digest);
+                valueByDigest.put(digest, inputs.get(i));
+            }
+        }
+        query(digestColumn, column, chunk, finder, valueByDigest, result);
+        queries++;
+        log.debug("Secure batch lookup of {} values finished in {} queries", inputs.size(), queries);
+        return result;
+    }
+
+    private <T> void query(DigestColumn digestColumn, SFunction<T, ?> column, List<String> digests,
+                           Function<SecureLambdaQueryWrapper<T>, List<T>> finder,
+                           Map<String, String> valueByDigest, Map<String, List<T>> result) {
+        SecureLambdaQueryWrapper<T> wrapper = new SecureLambdaQueryWrapper<T>(digestUtil)
+            .digestIn(digestColumn.getColumn(), digests);
+        List<T> rows = finder.apply(wrapper);
+        if (rows == null) {
+            return;
+        }
+        for (T row : rows) {
+            if (row == null) {
+                continue;
+            }
+            Object digest = digestColumn.getDigest(row);
+            String value = digest != null ? valueByDigest.get(digest) : null;
+            List<T> matches = value != null ? result.get(value) : null;
+            if (matches == null) {
+                // 查询没有选择摘要列时，按解密后的字段值映射
+                Object plain = column.apply(row);
+                matches = plain != null ? result.get(plain.toString()) : null;
+            }
+            if (matches != null) {
+                matches.add(row);
+            }
+        }
+    }
+}
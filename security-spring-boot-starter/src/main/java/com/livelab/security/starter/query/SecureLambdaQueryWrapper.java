@@ -0,0 +1,212 @@
+package com.livelab.security.starter.query;
+
+import com.baomidou.mybatisplus.core.conditions.AbstractLambdaWrapper;
+import com.baomidou.mybatisplus.core.conditions.SharedString;
+import com.baomidou.mybatisplus.core.conditions.query.Query;
+import com.baomidou.mybatisplus.core.conditions.segments.MergeSegments;
+import com.baomidou.mybatisplus.core.enums.SqlKeyword;
+import com.baomidou.mybatisplus.core.metadata.TableFieldInfo;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.baomidou.mybatisplus.core.toolkit.ArrayUtils;
+import com.baomidou.mybatisplus.core.toolkit.Assert;
+import com.baomidou.mybatisplus.core.toolkit.support.SFunction;
+import com.livelab.security.starter.util.DigestUtil;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * 支持按加密字段查询的Lambda条件构造器
+ *
+ * 加密字段存储的是随机化的密文，不能直接作为查询条件。eqSecure把加密字段上的等值条件改写为摘要列上的等值条件：
+ * 1. 通过@Digest的配对关系找到{字段名}Digest字段，再由MyBatis-Plus的表信息得到摘要列名
+ * 2. 通过DigestUtil计算摘要，与写入时的摘要计算方式（加盐或HMAC）完全一致
+ * 3. 生成 摘要列 = ? 条件，命中摘要列上的索引；HMAC重建索引期间配置了多个密钥版本时为 摘要列 IN (?, ?)
+ * inSecure同理，把多个明文的摘要合并为一条IN条件
+ *
+ * 其余用法与LambdaQueryWrapper相同，例如：
+ * new SecureLambdaQueryWrapper&lt;User&gt;(digestUtil).eqSecure(User::getPhone, phone).eq(User::getDeleted, 0)
+ */
+public class SecureLambdaQueryWrapper<T> extends AbstractLambdaWrapper<T, SecureLambdaQueryWrapper<T>>
+    implements Query<SecureLambdaQueryWrapper<T>, T, SFunction<T, ?>> {
+    private static final long serialVersionUID = 1L;
+
+    private final transient DigestUtil digestUtil;
+    /**
+     * 查询字段
+     */
+    private SharedString sqlSelect = new SharedString();
+
+    /**
+     * @param digestUtil 摘要工具，必须与写入时使用的是同一个实例或相同配置
+     */
+    public SecureLambdaQueryWrapper(DigestUtil digestUtil) {
+        this(null, digestUtil);
+    }
+
+    /**
+     * @param entityClass 实体类
+     * @param digestUtil 摘要工具，必须与写入时使用的是同一个实例或相同配置
+     */
+    public SecureLambdaQueryWrapper(Class<T> entityClass, DigestUtil digestUtil) {
+        this.digestUtil = digestUtil;
+        super.setEntityClass(entityClass);
+        super.initNeed();
+    }
+
+    private SecureLambdaQueryWrapper(DigestUtil digestUtil, T entity, Class<T> entityClass, SharedString sqlSelect,
+                                     AtomicInteger paramNameSeq, Map<String, Object> paramNameValuePairs,
+                                     MergeSegments mergeSegments, SharedString paramAlias, SharedString lastSql,
+                                     SharedString sqlComment, SharedString sqlFirst) {
+        this.digestUtil = digestUtil;
+        super.setEntity(entity);
+        super.setEntityClass(entityClass);
+        this.paramNameSeq = paramNameSeq;
+        this.paramNameValuePairs = paramNameValuePairs;
+        this.expression = mergeSegments;
+        this.sqlSelect = sqlSelect;
+        this.paramAlias = paramAlias;
+        this.lastSql = lastSql;
+        this.sqlComment = sqlComment;
+        this.sqlFirst = sqlFirst;
+    }
+
+    /**
+     * 加密字段等于指定明文
+     *
+     * @param column 带有@Digest的加密字段，如User::getPhone
+     * @param value 明文，为null或空字符串时不会匹配任何行
+     * @return 当前条件构造器
+     * @throws com.livelab.security.starter.exception.SecurityException 当字段没有配对的摘要列时抛出
+     */
+    public SecureLambdaQueryWrapper<T> eqSecure(SFunction<T, ?> column, String value) {
+        return eqSecure(true, column, value);
+    }
+
+    /**
+     * 加密字段等于指定明文
+     *
+     * @param condition 是否添加该条件
+     * @param column 带有@Digest的加密字段，如User::getPhone
+     * @param value 明文，为null或空字符串时不会匹配任何行
+     * @return 当前条件构造器
+     * @throws com.livelab.security.starter.exception.SecurityException 当字段没有配对的摘要列时抛出
+     */
+    public SecureLambdaQueryWrapper<T> eqSecure(boolean condition, SFunction<T, ?> column, String value) {
+        if (!condition) {
+            return typedThis;
+        }
+        String digestColumn = DigestColumns.of(getEntityClass(), column).getColumn();
+        return digestIn(digestColumn, digestUtil.digestCandidates(value));
+    }
+
+    /**
+     * 加密字段等于指定明文中的任意一个
+     *
+     * 所有明文的摘要合并为一条IN条件，明文较多时应使用{@link SecureBatchLookup}分批查询
+     *
+     * @param column 带有@Digest的加密字段，如User::getPhone
+     * @param values 明文，忽略其中的null和空字符串；没有有效明文时不会匹配任何行
+     * @return 当前条件构造器
+     * @throws com.livelab.security.starter.exception.SecurityException 当字段没有配对的摘要列时抛出
+     */
+    public SecureLambdaQueryWrapper<T> inSecure(SFunction<T, ?> column, Collection<String> values) {
+        return inSecure(true, column, values);
+    }
+
+    /**
+     * 加密字段等于指定明文中的任意一个
+     *
+     * @param condition 是否添加该条件
+     * @param column 带有@Digest的加密字段，如User::getPhone
+     * @param values 明文，忽略其中的null和空字符串；没有有效明文时不会匹配任何行
+     * @return 当前条件构造器
+     * @throws com.livelab.security.starter.exception.SecurityException 当字段没有配对的摘要列时抛出
+     */
+    public SecureLambdaQueryWrapper<T> inSecure(boolean condition, SFunction<T, ?> column, Collection<String> values) {
+        if (!condition) {
+            return typedThis;
+        }
+        String digestColumn = DigestColumns.of(getEntityClass(), column).getColumn();
+        List<String> digests = new ArrayList<>();
+        for (List<String> candidates : digestUtil.digestCandidatesAll(new ArrayList<>(values))) {
+            digests.addAll(candidates);
+        }
+        return digestIn(digestColumn, digests);
+    }
+
+    /**
+     * 摘要列等于已计算好的摘要之一，供批量查询复用已经计算的摘要
+     */
+    SecureLambdaQueryWrapper<T> digestIn(String digestColumn, List<String> digests) {
+        if (digests.isEmpty()) {
+            // 空值没有摘要，不能退化为没有条件的查询
+            return apply("1 = 0");
+        }
+        if (digests.size() == 1) {
+            String digest = digests.get(0);
+            appendSqlSegments(() -> digestColumn, SqlKeyword.EQ, () -> formatParam(null, digest));
+        } else {
+            appendSqlSegments(() -> digestColumn, SqlKeyword.IN, inExpression(digests));
+        }
+        return typedThis;
+    }
+
+    /**
+     * 查询指定字段
+     *
+     * @param columns 查询字段，只读取不保留，转发给columnsToString不会造成堆污染
+     */
+    @SafeVarargs
+    @SuppressWarnings("varargs")
+    @Override
+    public final SecureLambdaQueryWrapper<T> select(SFunction<T, ?>... columns) {
+        if (ArrayUtils.isNotEmpty(columns)) {
+            this.sqlSelect.setStringValue(columnsToString(false, columns));
+        }
+        return typedThis;
+    }
+
+    /**
+     * 过滤查询的字段信息(主键除外!)
+     *
+     * @param entityClass 实体类
+     * @param predicate 过滤方式
+     */
+    @Override
+    public SecureLambdaQueryWrapper<T> select(Class<T> entityClass, Predicate<TableFieldInfo> predicate) {
+        if (entityClass == null) {
+            entityClass = getEntityClass();
+        } else {
+            setEntityClass(entityClass);
+        }
+        Assert.notNull(entityClass, "entityClass can not be null");
+        this.sqlSelect.setStringValue(TableInfoHelper.getTableInfo(entityClass).chooseSelect(predicate));
+        return typedThis;
+    }
+
+    @Override
+    public String getSqlSelect() {
+        return sqlSelect.getStringValue();
+    }
+
+    /**
+     * 用于生成嵌套sql，故sqlSelect不向下传递
+     */
+    @Override
+    protected SecureLambdaQueryWrapper<T> instance() {
+        return new SecureLambdaQueryWrapper<>(digestUtil, getEntity(), getEntityClass(), null, paramNameSeq,
+            paramNameValuePairs, new MergeSegments(), paramAlias, SharedString.emptyString(),
+            SharedString.emptyString(), SharedString.emptyString());
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        sqlSelect.toNull();
+    }
+}
@@ -0,0 +1,587 @@
+package com.livelab.security.starter.util;
+
+import com.livelab.security.starter.exception.SecurityException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * 密文格式的编解码器，在线程私有的缓冲区上完成全部中间处理
+ *
+ * 支持两种格式：
+ * - 传统格式：$密钥ID$Base64编码的加密内容
+ * - 紧凑格式：~URL安全的Base64（无填充），内容为1字节版本 + varint编码的密钥ID + 密文
+ *
+ * 加密时：原文直接按UTF-8编码进字节缓冲区，密文的Base64编码和头部直接写入字符缓冲区，
+ * 每个字段只创建最终结果这一个String。
+ * 解密时：在原字符串上就地解析头部，Base64直接从字符串解码进字节缓冲区，
+ * 不产生substring、Long装箱和解码中间数组。
+ *
+ * 缓冲区按需扩容后复用，实例不是线程安全的，只能通过{@link #get()}在当前线程内使用
+ */
+final class CipherTextCodec {
+    private static final char SEPARATOR = '$';
+    private static final char ENGINE_SEPARATOR = ':';
+    private static final char COMPACT_SIGIL = '~';
+    /**
+     * 紧凑格式版本字节的高4位，低4位为加密引擎标识
+     */
+    private static final int COMPACT_VERSION = 0x10;
+    private static final int VERSION_MASK = 0xF0;
+    /**
+     * 版本字节加上最长10字节的varint密钥ID
+     */
+    private static final int MAX_COMPACT_HEADER = 11;
+    private static final char[] BASE64_CHARS =
+        "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+    private static final char[] BASE64_URL_CHARS =
+        "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+    private static final int[] BASE64_VALUES = values(BASE64_CHARS);
+    private static final int[] BASE64_URL_VALUES = values(BASE64_URL_CHARS);
+    private static final int INITIAL_CAPACITY = 256;
+
+    private static final ThreadLocal<CipherTextCodec> LOCAL = ThreadLocal.withInitial(CipherTextCodec::new);
+
+    private byte[] input = new byte[INITIAL_CAPACITY];
+    private byte[] output = new byte[INITIAL_CAPACITY];
+    private char[] chars = new char[INITIAL_CAPACITY];
+    private final byte[] header = new byte[MAX_COMPACT_HEADER + 1];
+
+    /**
+     * 最近一次{@link #decode(String)}解析出的头部信息
+     */
+    private long keyId;
+    private int engineId;
+    private int payloadOffset;
+
+    private CipherTextCodec() {
+    }
+
+    /**
+     * 获取当前线程的编解码器
+     */
+    static CipherTextCodec get() {
+        return LOCAL.get();
+    }
+
+    /**
+     * 输入缓冲区：加密时存放UTF-8原文，解密时存放Base64解码后的密文
+     */
+    byte[] input() {
+        return input;
+    }
+
+    /**
+     * 获取至少指定容量的输出缓冲区，用于存放加解密结果
+     */
+    byte[] output(int capacity) {
+        if (output.length < capacity) {
+            output = new byte[Math.max(capacity, output.length * 2)];
+        }
+        return output;
+    }
+
+    /**
+     * 将字符串按UTF-8编码写入输入缓冲区
+     *
+     * @param content 原文
+     * @return 编码后的字节数
+     */
+    int encodeUtf8(String content) {
+        // 每个char最多编码为3个字节（代理对两个char编码为4个字节）
+        ensureInput(content.length() * 3);
+        return encodeUtf8(content, input);
+    }
+
+    /**
+     * 将字符串按UTF-8编码写入指定缓冲区，结果与String.getBytes(UTF_8)一致
+     *
+     * @param content 原文
+     * @param buffer 目标缓冲区，长度至少为content.length() * 3
+     * @return 编码后的字节数
+     */
+    static int encodeUtf8(String content, byte[] buffer) {
+        int length = content.length();
+        int position = 0;
+        for (int i = 0; i < length; i++) {
+            char c = content.charAt(i);
+            if (c < 0x80) {
+                buffer[position++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[position++] = (byte) (0xC0 | (c >> 6));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(content.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, content.charAt(++i));
+                buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // 不成对的代理字符按String.getBytes的行为替换为'?'
+                buffer[position++] = (byte) '?';
+            } else {
+                buffer[position++] = (byte) (0xE0 | (c >> 12));
+                buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return position;
+    }
+
+    /**
+     * 将密文格式化为：$密钥ID$Base64编码的加密内容
+     * 非SM4/ECB引擎的密文在密钥ID后附加引擎标识：$密钥ID:引擎标识$Base64编码的加密内容
+     *
+     * @param keyId 密钥ID
+     * @param engineId 加密引擎标识，0表示SM4/ECB
+     * @param data 密文
+     * @param length 密文长度
+     * @return 格式化后的字符串
+     */
+    String format(long keyId, int engineId, byte[] data, int length) {
+        ensureChars(34 + (length + 2) / 3 * 4);
+        char[] buffer = chars;
+        int position = 0;
+        buffer[position++] = SEPARATOR;
+        position = writeDecimal(keyId, buffer, position);
+        if (engineId != 0) {
+            buffer[position++] = ENGINE_SEPARATOR;
+            position = writeDecimal(engineId, buffer, position);
+        }
+        buffer[position++] = SEPARATOR;
+        position = encodeBase64(data, length, buffer, position, BASE64_CHARS, true);
+        return new String(buffer, 0, position);
+    }
+
+    /**
+     * 将密文格式化为紧凑格式：~URL安全Base64(版本字节 + varint密钥ID + 密文)
+     * 格式化后输入缓冲区中的原文会被覆盖
+     *
+     * @param keyId 密钥ID
+     * @param engineId 加密引擎标识，取值0~15
+     * @param data 密文
+     * @param length 密文长度
+     * @return 格式化后的字符串
+     */
+    String formatCompact(long keyId, int engineId, byte[] data, int length) {
+        if ((engineId & VERSION_MASK) != 0) {
+            throw new SecurityException("Engine id out of range for compact format: " + engineId);
+        }
+        // 原文在加密完成后不再需要，复用输入缓冲区拼接头部和密文
+        ensureInput(MAX_COMPACT_HEADER + length);
+        byte[] packed = input;
+        packed[0] = (byte) (COMPACT_VERSION | engineId);
+        int position = writeVarint(keyId, packed, 1);
+        System.arraycopy(data, 0, packed, position, length);
+        int total = position + length;
+
+        ensureChars(1 + (total * 4 + 2) / 3);
+        char[] buffer = chars;
+        buffer[0] = COMPACT_SIGIL;
+        int end = encodeBase64(packed, total, buffer, 1, BASE64_URL_CHARS, false);
+        return new String(buffer, 0, end);
+    }
+
+    /**
+     * 按头部结构判断字段值是否为本模块生成的加密内容，不解码密文
+     * - 传统格式：$密钥ID$或$密钥ID:引擎标识$，后跟带填充的标准Base64
+     * - 紧凑格式：~后跟无填充的URL安全Base64，首字节为合法的版本字节
+     *
+     * @param value 字段值
+     * @return 结构符合任一密文格式时返回true
+     */
+    static boolean isCipherText(String value) {
+        int length = value.length();
+        if (length < 2) {
+            return false;
+        }
+        if (value.charAt(0) == COMPACT_SIGIL) {
+            if (length < 3 || (length - 1) % 4 == 1) {
+                return false;
+            }
+            for (int i = 1; i < length; i++) {
+                if (!isBase64(value.charAt(i), BASE64_URL_VALUES)) {
+                    return false;
+                }
+            }
+            int version = BASE64_URL_VALUES[value.charAt(1)] << 2 | BASE64_URL_VALUES[value.charAt(2)] >> 4;
+            return (version & VERSION_MASK) == COMPACT_VERSION;
+        }
+        if (value.charAt(0) != SEPARATOR) {
+            return false;
+        }
+
+        // 头部：至少一位数字的密钥ID，可选的:引擎标识
+        int i = 1;
+        int digits = 0;
+        boolean engine = false;
+        for (; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits++;
+            } else if (c == ENGINE_SEPARATOR && !engine && digits > 0) {
+                engine = true;
+                digits = 0;
+            } else {
+                break;
+            }
+        }
+        if (i == length || value.charAt(i) != SEPARATOR || digits == 0) {
+            return false;
+        }
+
+        // 密文：非空、长度为4的倍数的标准Base64，末尾最多两个填充字符
+        int start = i + 1;
+        if (start == length || (length - start) % 4 != 0) {
+            return false;
+        }
+        int end = length;
+        for (int pad = 0; pad < 2 && end > start && value.charAt(end - 1) == '='; pad++) {
+            end--;
+        }
+        for (int j = start; j < end; j++) {
+            if (!isBase64(value.charAt(j), BASE64_VALUES)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isBase64(char c, int[] table) {
+        return c < 128 && table[c] >= 0;
+    }
+
+    /**
+     * 判断加密内容是否为紧凑格式
+     */
+    static boolean isCompact(String value) {
+        return !value.isEmpty() && value.charAt(0) == COMPACT_SIGIL;
+    }
+
+    /**
+     * 解析头部并将密文解码进输入缓冲区，两种格式均可识别
+     * 解析出的密钥ID、引擎标识和密文起始位置通过{@link #keyId()}、{@link #engineId()}、{@link #payloadOffset()}获取
+     *
+     * @param value 加密内容
+     * @return 密文长度，为0表示原文是空字符串
+     * @throws SecurityException 当头部格式不正确时抛出
+     * @throws IllegalArgumentException 当Base64内容不合法时抛出
+     */
+    int decode(String value) {
+        if (isCompact(value)) {
+            int total = decodeBase64(value, 1, BASE64_URL_VALUES);
+            payloadOffset = parseCompactHeader(input, total);
+            return total - payloadOffset;
+        }
+        int end = headerEnd(value);
+        keyId = parseKeyId(value, end);
+        engineId = parseEngineId(value, end);
+        payloadOffset = 0;
+        if (end + 1 == value.length()) {
+            return 0;
+        }
+        return decodeBase64(value, end + 1, BASE64_VALUES);
+    }
+
+    long keyId() {
+        return keyId;
+    }
+
+    int engineId() {
+        return engineId;
+    }
+
+    int payloadOffset() {
+        return payloadOffset;
+    }
+
+    /**
+     * 只解析头部中的密钥ID，不解码密文
+     * 紧凑格式只需解码前16个字符
+     *
+     * @param value 加密内容
+     * @return 密钥ID
+     * @throws SecurityException 当头部格式不正确时抛出
+     */
+    long peekKeyId(String value) {
+        if (!isCompact(value)) {
+            return parseKeyId(value, headerEnd(value));
+        }
+        // 16个字符解码为12个字节，足以覆盖最长的头部
+        int end = Math.min(value.length(), 1 + 16);
+        int length = decodeBase64Prefix(value, end, header);
+        parseCompactHeader(header, length);
+        return keyId;
+    }
+
+    /**
+     * 将加密内容转换为二进制存储形式
+     * 紧凑格式存储解码后的原始字节，传统格式存储其UTF-8字节，读取时按首字节区分
+     */
+    static byte[] toBinary(String value) {
+        if (isCompact(value)) {
+            return Base64.getUrlDecoder().decode(value.substring(1));
+        }
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 将二进制存储形式还原为加密内容字符串
+     */
+    static String fromBinary(byte[] data) {
+        if (data.length > 0 && (data[0] & VERSION_MASK) == COMPACT_VERSION) {
+            return COMPACT_SIGIL + Base64.getUrlEncoder().withoutPadding().encodeToString(data);
+        }
+        return new String(data, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 查找$密钥ID$头部结束的位置（第二个分隔符的下标）
+     *
+     * @param value 加密内容
+     * @return 第二个分隔符的下标
+     * @throws SecurityException 当格式不正确时抛出
+     */
+    private static int headerEnd(String value) {
+        int end = value.indexOf(SEPARATOR, 1);
+        if (value.isEmpty() || value.charAt(0) != SEPARATOR || end <= 1) {
+            throw new SecurityException("Invalid encrypted value format");
+        }
+        return end;
+    }
+
+    /**
+     * 就地解析$密钥ID$头部中的密钥ID
+     *
+     * @param value 加密内容
+     * @param end 第二个分隔符的下标
+     * @return 密钥ID
+     * @throws SecurityException 当格式不正确时抛出
+     */
+    private static long parseKeyId(String value, int end) {
+        long keyId = 0;
+        for (int i = 1; i < end; i++) {
+            if (value.charAt(i) == ENGINE_SEPARATOR && i > 1) {
+                break;
+            }
+            int digit = value.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new SecurityException("Invalid key id in encrypted value");
+            }
+            keyId = keyId * 10 + digit;
+        }
+        return keyId;
+    }
+
+    /**
+     * 解析头部中的加密引擎标识，没有引擎标识时为0（SM4/ECB）
+     *
+     * @param value 加密内容
+     * @param end 第二个分隔符的下标
+     * @return 引擎标识
+     * @throws SecurityException 当格式不正确时抛出
+     */
+    private static int parseEngineId(String value, int end) {
+        int separator = value.lastIndexOf(ENGINE_SEPARATOR, end);
+        if (separator <= 1) {
+            return 0;
+        }
+        int engineId = 0;
+        for (int i = separator + 1; i < end; i++) {
+            int digit = value.charAt(i) - '0';
+            if (digit < 0 || digit > 9 || engineId > 0xFFFF) {
+                throw new SecurityException("Invalid engine id in encrypted value");
+            }
+            engineId = engineId * 10 + digit;
+        }
+        if (separator + 1 == end) {
+            throw new SecurityException("Invalid engine id in encrypted value");
+        }
+        return engineId;
+    }
+
+    /**
+     * 将字符串中从指定位置开始的Base64内容解码进输入缓冲区
+     *
+     * @param value 包含Base64内容的字符串
+     * @param from Base64内容的起始下标
+     * @param table 字符到6位值的映射表
+     * @return 解码后的字节数
+     * @throws IllegalArgumentException 当Base64内容不合法时抛出
+     */
+    private int decodeBase64(String value, int from, int[] table) {
+        int end = value.length();
+        while (end > from && value.charAt(end - 1) == '=') {
+            end--;
+        }
+        int length = end - from;
+        if (length % 4 == 1 || value.length() - end > 2) {
+            throw new IllegalArgumentException("Invalid base64 length");
+        }
+        ensureInput(length * 3 / 4);
+        byte[] buffer = input;
+        int position = 0;
+        int i = from;
+        for (; i + 4 <= end; i += 4) {
+            int bits = sextet(value, i, table) << 18 | sextet(value, i + 1, table) << 12 | sextet(value, i + 2, table) << 6 | sextet(value, i + 3, table);
+            buffer[position++] = (byte) (bits >> 16);
+            buffer[position++] = (byte) (bits >> 8);
+            buffer[position++] = (byte) bits;
+        }
+        int remaining = end - i;
+        if (remaining == 2) {
+            int bits = sextet(value, i, table) << 18 | sextet(value, i + 1, table) << 12;
+            buffer[position++] = (byte) (bits >> 16);
+        } else if (remaining == 3) {
+            int bits = sextet(value, i, table) << 18 | sextet(value, i + 1, table) << 12 | sextet(value, i + 2, table) << 6;
+            buffer[position++] = (byte) (bits >> 16);
+            buffer[position++] = (byte) (bits >> 8);
+        }
+        return position;
+    }
+
+    /**
+     * 将输出缓冲区中的UTF-8字节转换为字符串
+     */
+    static String toUtf8String(byte[] data, int length) {
+        return new String(data, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private static int sextet(String value, int index, int[] table) {
+        char c = value.charAt(index);
+        int sextet = c < 128 ? table[c] : -1;
+        if (sextet < 0) {
+            throw new IllegalArgumentException("Illegal base64 character: " + c);
+        }
+        return sextet;
+    }
+
+    /**
+     * 解码紧凑格式的头部前缀（不要求长度是4的整数倍），用于只读取密钥ID的场景
+     */
+    private static int decodeBase64Prefix(String value, int end, byte[] target) {
+        int position = 0;
+        int bits = 0;
+        int bitCount = 0;
+        for (int i = 1; i < end; i++) {
+            bits = bits << 6 | sextet(value, i, BASE64_URL_VALUES);
+            bitCount += 6;
+            if (bitCount >= 8) {
+                bitCount -= 8;
+                target[position++] = (byte) (bits >> bitCount);
+            }
+        }
+        return position;
+    }
+
+    /**
+     * 解析紧凑格式的版本字节和varint密钥ID
+     *
+     * @return 密文在缓冲区中的起始位置
+     */
+    private int parseCompactHeader(byte[] data, int length) {
+        if (length < 2 || (data[0] & VERSION_MASK) != COMPACT_VERSION) {
+            throw new SecurityException("Invalid encrypted value format");
+        }
+        engineId = data[0] & ~VERSION_MASK & 0xFF;
+        long value = 0;
+        int position = 1;
+        for (int shift = 0; ; shift += 7) {
+            if (position >= length || shift > 63) {
+                throw new SecurityException("Invalid key id in encrypted value");
+            }
+            byte b = data[position++];
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                break;
+            }
+        }
+        keyId = value;
+        return position;
+    }
+
+    private static int writeVarint(long value, byte[] buffer, int position) {
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+        return position;
+    }
+
+    private static int encodeBase64(byte[] data, int length, char[] buffer, int position, char[] alphabet, boolean padding) {
+        int i = 0;
+        for (; i + 3 <= length; i += 3) {
+            int bits = (data[i] & 0xFF) << 16 | (data[i + 1] & 0xFF) << 8 | (data[i + 2] & 0xFF);
+            buffer[position++] = alphabet[bits >>> 18];
+            buffer[position++] = alphabet[(bits >>> 12) & 0x3F];
+            buffer[position++] = alphabet[(bits >>> 6) & 0x3F];
+            buffer[position++] = alphabet[bits & 0x3F];
+        }
+        int remaining = length - i;
+        if (remaining == 1) {
+            int bits = (data[i] & 0xFF) << 16;
+            buffer[position++] = alphabet[bits >>> 18];
+            buffer[position++] = alphabet[(bits >>> 12) & 0x3F];
+            if (padding) {
+                buffer[position++] = '=';
+                buffer[position++] = '=';
+            }
+        } else if (remaining == 2) {
+            int bits = (data[i] & 0xFF) << 16 | (data[i + 1] & 0xFF) << 8;
+            buffer[position++] = alphabet[bits >>> 18];
+            buffer[position++] = alphabet[(bits >>> 12) & 0x3F];
+            buffer[position++] = alphabet[(bits >>> 6) & 0x3F];
+            if (padding) {
+                buffer[position++] = '=';
+            }
+        }
+        return position;
+    }
+
+    private static int[] values(char[] alphabet) {
+        int[] values = new int[128];
+        Arrays.fill(values, -1);
+        for (int i = 0; i < alphabet.length; i++) {
+            values[alphabet[i]] = i;
+        }
+        return values;
+    }
+
+    private static int writeDecimal(long value, char[] buffer, int position) {
+        if (value == 0) {
+            buffer[position++] = '0';
+            return position;
+        }
+        int start = position;
+        if (value < 0) {
+            buffer[position++] = '-';
+            start = position;
+            value = -value;
+        }
+        while (value > 0) {
+            buffer[position++] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        // 数字是从低位到高位写入的，反转为正常顺序
+        for (int left = start, right = position - 1; left < right; left++, right--) {
+            char c = buffer[left];
+            buffer[left] = buffer[right];
+            buffer[right] = c;
+        }
+        return position;
+    }
+
+    private void ensureInput(int capacity) {
+        if (input.length < capacity) {
+            input = new byte[Math.max(capacity, input.length * 2)];
+        }
+    }
+
+    private void ensureChars(int capacity) {
+        if (chars.length < capacity) {
+            chars = new char[Math.max(capacity, chars.length * 2)];
+        }
+    }
+}
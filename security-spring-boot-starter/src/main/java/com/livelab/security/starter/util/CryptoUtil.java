@@ -1,28 +1,103 @@
 package com.livelab.security.starter.util;
 
+import com.livelab.security.starter.core.DecryptResultCache;
 import com.livelab.security.starter.core.KeyManager;
+import com.livelab.security.starter.core.KeyMaterialCache;
+import com.livelab.security.starter.core.KeyMaterialLoader;
+import com.livelab.security.starter.crypto.CipherEngine;
+import com.livelab.security.starter.crypto.CipherEngines;
+import com.livelab.security.starter.crypto.CipherTextFormat;
 import com.livelab.security.starter.exception.SecurityException;
+import com.livelab.security.starter.model.KeyInfo;
 import lombok.extern.slf4j.Slf4j;
-import org.bouncycastle.jce.provider.BouncyCastleProvider;
 
-import javax.crypto.Cipher;
 import javax.crypto.spec.SecretKeySpec;
 import java.nio.charset.StandardCharsets;
-import java.security.Security;
-import java.util.Base64;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 @Slf4j
 public class CryptoUtil {
-    private static final String SEPARATOR = "$";
     private static final int SM4_KEY_LENGTH = 16; // SM4 requires 128-bit (16-byte) key
+    private static final int DEFAULT_KEY_CACHE_CAPACITY = 1024;
     private final KeyManager keyManager;
+    private final KeyMaterialCache keyCache;
+    private final KeyMaterialLoader keyLoader;
+    private final CipherEngines engines;
+    private final boolean compact;
+    private final DecryptResultCache decryptCache;
 
-    static {
-        Security.addProvider(new BouncyCastleProvider());
+    public CryptoUtil(KeyManager keyManager) {
+        this(keyManager, DEFAULT_KEY_CACHE_CAPACITY);
     }
 
-    public CryptoUtil(KeyManager keyManager) {
+    /**
+     * @param keyManager 密钥管理器
+     * @param keyCacheCapacity 解密密钥缓存的最大条目数
+     */
+    public CryptoUtil(KeyManager keyManager, int keyCacheCapacity) {
+        this(keyManager, keyCacheCapacity, CipherEngines.defaults());
+    }
+
+    /**
+     * @param keyManager 密钥管理器
+     * @param keyCacheCapacity 解密密钥缓存的最大条目数
+     * @param engines 加密引擎，加密使用选定的引擎，解密按密文中的引擎标识选择
+     */
+    public CryptoUtil(KeyManager keyManager, int keyCacheCapacity, CipherEngines engines) {
+        this(keyManager, keyCacheCapacity, engines, CipherTextFormat.LEGACY);
+    }
+
+    /**
+     * @param keyManager 密钥管理器
+     * @param keyCacheCapacity 解密密钥缓存的最大条目数
+     * @param engines 加密引擎，加密使用选定的引擎，解密按密文中的引擎标识选择
+     * @param format 加密结果的存储格式，解密时两种格式都能识别
+     */
+    public CryptoUtil(KeyManager keyManager, int keyCacheCapacity, CipherEngines engines, CipherTextFormat format) {
+        this(keyManager, keyCacheCapacity, engines, format, null);
+    }
+
+    /**
+     * @param keyManager 密钥管理器
+     * @param keyCacheCapacity 解密密钥缓存的最大条目数
+     * @param engines 加密引擎，加密使用选定的引擎，解密按密文中的引擎标识选择
+     * @param format 加密结果的存储格式，解密时两种格式都能识别
+     * @param decryptCache 解密结果缓存，为null时不缓存
+     */
+    public CryptoUtil(KeyManager keyManager, int keyCacheCapacity, CipherEngines engines, CipherTextFormat format,
+                      DecryptResultCache decryptCache) {
         this.keyManager = keyManager;
+        this.engines = engines;
+        this.compact = format == CipherTextFormat.COMPACT;
+        this.decryptCache = decryptCache;
+        this.keyCache = new KeyMaterialCache(keyCacheCapacity);
+        this.keyLoader = new KeyMaterialLoader(keyManager, keyCache, this::toKeySpec);
+    }
+
+    /**
+     * 获取解密密钥缓存，可用于查看命中/未命中次数
+     */
+    public KeyMaterialCache getKeyCache() {
+        return keyCache;
+    }
+
+    /**
+     * 获取解密结果缓存，可用于查看命中率和内存占用；未开启时返回null
+     */
+    public DecryptResultCache getDecryptCache() {
+        return decryptCache;
+    }
+
+    /**
+     * 获取加密使用的引擎
+     */
+    public CipherEngine getEncryptEngine() {
+        return engines.getEncryptEngine();
     }
 
     /**
@@ -73,11 +148,12 @@ public class CryptoUtil {
      * 
      * 加密流程：
      * 1. 从密钥管理器获取当前有效的密钥信息
-     * 2. 使用SM4/ECB/PKCS5Padding方式进行加密
-     * 3. 将结果格式化为: $密钥ID$Base64编码的加密内容
+     * 2. 使用选定的加密引擎进行加密（默认SM4/ECB/PKCS5Padding）
+     * 3. 将结果格式化为: $密钥ID$Base64编码的加密内容，非SM4引擎在密钥ID后附加:引擎标识；
+     *    配置为紧凑格式时为：~URL安全Base64(版本字节 + varint密钥ID + 密文)
      * 
      * @param content 需要加密的原文内容
-     * @return 格式化的加密结果，格式为：$密钥ID$加密内容
+     * @return 格式化的加密结果，格式为：$密钥ID$加密内容，或紧凑格式
      *         如果输入为null或空字符串，则直接返回输入值
      * @throws SecurityException 当加密过程发生错误时抛出
      */
@@ -87,25 +163,12 @@ public class CryptoUtil {
             return content;
         }
 
+        // 从密钥管理器获取当前有效的密钥信息（包含密钥ID和密钥值）
+        KeyInfo keyInfo = keyManager.getKeyInfo();
+        long keyId = keyInfo.getId();
         try {
-            // 从密钥管理器获取当前有效的密钥信息（包含密钥ID和密钥值）
-            com.livelab.security.starter.model.KeyInfo keyInfo = keyManager.getKeyInfo();
-            // 对密钥进行处理（如填充或截断），确保符合SM4算法要求
-            byte[] processedKey = processKey(keyInfo.getKeyValue());
-
-            // 创建SM4算法的密钥规范
-            SecretKeySpec skeySpec = new SecretKeySpec(processedKey, "SM4");
-            // 获取SM4算法实例，使用ECB模式和PKCS5Padding填充
-            // BC表示使用BouncyCastle作为加密提供者
-            Cipher cipher = Cipher.getInstance("SM4/ECB/PKCS5Padding", "BC");
-            // 初始化加密模式
-            cipher.init(Cipher.ENCRYPT_MODE, skeySpec);
-            // 将原文转换为UTF-8编码的字节数组，然后进行加密
-            byte[] encrypted = cipher.doFinal(content.getBytes(StandardCharsets.UTF_8));
-            
-            // 组装最终结果：$密钥ID$Base64编码的加密内容
-            // 使用分隔符将密钥ID和加密内容分开，方便后续解密时提取
-            return SEPARATOR + keyInfo.getId() + SEPARATOR + Base64.getEncoder().encodeToString(encrypted);
+            // 加密并组装最终结果：$密钥ID$Base64编码的加密内容
+            return encryptValue(engines.getEncryptEngine(), keyId, encryptionKey(keyInfo), content, CipherTextCodec.get(), compact);
         } catch (Exception e) {
             // 将加密过程中的异常包装为SecurityException并抛出
             throw new SecurityException("Encryption failed", e);
@@ -113,43 +176,250 @@ public class CryptoUtil {
     }
 
     /**
-     * 使用SM4算法解密加密内容
+     * 解密加密内容，传统格式和紧凑格式均可识别，按头部中的引擎标识选择解密引擎
      *
-     * @return 解密后的明文，如果输入为空则直接返回输入值
+     * @return 解密后的明文，如果加密内容为空则返回空字符串
      * @throws SecurityException 当解密过程发生错误时抛出
      */
     public String decrypt(String encryptedValue) {
-        // 解析密钥类型和加密内容
-        Long keyIde = Long.valueOf(encryptedValue.substring(1, encryptedValue.indexOf("$", 1)));
-        String encryptedContent = encryptedValue.substring(encryptedValue.indexOf("$", 1) + 1);
-
-        // 空值校验：如果加密内容为null或空字符串，直接返回原值
-        if (encryptedContent == null || encryptedContent.isEmpty()) {
-            return encryptedContent;
+        // 热点数据直接使用缓存的解密结果
+        if (decryptCache != null) {
+            String cached = decryptCache.get(encryptedValue);
+            if (cached != null) {
+                return cached;
+            }
         }
-
         try {
-            // 从密钥管理器获取指定ID的密钥值
-            String key = keyManager.getKeyValueById(keyIde); 
-            // 对密钥进行处理（如填充或截断），确保符合SM4算法要求
-            byte[] processedKey = processKey(key);
-
-            // 创建SM4算法的密钥规范
-            SecretKeySpec skeySpec = new SecretKeySpec(processedKey, "SM4");
-            // 获取SM4算法实例，使用ECB模式和PKCS5Padding填充
-            // BC表示使用BouncyCastle作为加密提供者
-            Cipher cipher = Cipher.getInstance("SM4/ECB/PKCS5Padding", "BC");
-            // 初始化解密模式
-            cipher.init(Cipher.DECRYPT_MODE, skeySpec);
-            // 将Base64编码的加密内容解码为字节数组，然后进行解密
-            byte[] decrypted = cipher.doFinal(Base64.getDecoder().decode(encryptedContent));
-            // 将解密后的字节数组转换为UTF-8编码的字符串
-            return new String(decrypted, StandardCharsets.UTF_8);
+            // 解析头部中的密钥ID和引擎标识，Base64直接解码进线程私有缓冲区
+            CipherTextCodec codec = CipherTextCodec.get();
+            int length = codec.decode(encryptedValue);
+            // 空值校验：如果加密内容为空字符串，直接返回空字符串
+            if (length == 0) {
+                return "";
+            }
+            long keyId = codec.keyId();
+            CipherEngine engine = engines.forId(codec.engineId());
+            // 获取指定ID的密钥，首次使用后从内存缓存读取
+            SecretKeySpec skeySpec = resolveKey(keyId);
+            // 解密并转换为UTF-8编码的字符串
+            String plaintext = decryptValue(engine, keyId, skeySpec, codec, length);
+            if (decryptCache != null) {
+                decryptCache.put(encryptedValue, plaintext);
+            }
+            return plaintext;
         } catch (Exception e) {
             // 记录解密失败的错误日志，包含加密内容和异常信息
-            log.error("Decryption failed for content: {}", encryptedContent, e);
+            log.error("Decryption failed for content: {}", encryptedValue, e);
             // 将异常包装为SecurityException并抛出
             throw new SecurityException("Decryption failed", e);
         }
     }
+
+    /**
+     * 批量加密
+     * 整批只获取一次当前密钥，逐个加密
+     *
+     * @param contents 需要加密的原文列表，元素可以为null或空字符串（原样返回）
+     * @return 与输入顺序一致的加密结果列表
+     * @throws SecurityException 当加密过程发生错误时抛出
+     */
+    public List<String> encryptAll(List<String> contents) {
+        return contents.isEmpty() ? new ArrayList<>() : encryptAll(contents, keyManager.getKeyInfo());
+    }
+
+    /**
+     * 使用指定的密钥批量加密
+     * 用于一次批量写入分多批加密的场景，整个批量写入只获取一次当前密钥，所有行使用同一个密钥
+     *
+     * @param contents 需要加密的原文列表，元素可以为null或空字符串（原样返回）
+     * @param keyInfo 通过{@link #currentKey()}获取的密钥快照
+     * @return 与输入顺序一致的加密结果列表
+     * @throws SecurityException 当加密过程发生错误时抛出
+     */
+    public List<String> encryptAll(List<String> contents, KeyInfo keyInfo) {
+        List<String> results = new ArrayList<>(contents.size());
+        if (contents.isEmpty()) {
+            return results;
+        }
+        long keyId = keyInfo.getId();
+        try {
+            CipherEngine engine = engines.getEncryptEngine();
+            SecretKeySpec skeySpec = encryptionKey(keyInfo);
+            CipherTextCodec codec = CipherTextCodec.get();
+            for (String content : contents) {
+                if (content == null || content.isEmpty()) {
+                    results.add(content);
+                } else {
+                    results.add(encryptValue(engine, keyId, skeySpec, content, codec, compact));
+                }
+            }
+            return results;
+        } catch (Exception e) {
+            throw new SecurityException("Encryption failed", e);
+        }
+    }
+
+    /**
+     * 获取当前有效的加密密钥快照
+     *
+     * @return 当前密钥的ID和密钥值
+     */
+    public KeyInfo currentKey() {
+        return keyManager.getKeyInfo();
+    }
+
+    /**
+     * 批量解密
+     * - 按密钥ID对密文分组，每组只获取一次密钥
+     * - 缓存中没有的密钥ID通过一次IN查询一起加载
+     * - 开启解密结果缓存时，命中的密文不再解密
+     *
+     * @param encryptedValues 加密内容列表，元素可以为null或空字符串（原样返回）
+     * @return 与输入顺序一致的解密结果列表
+     * @throws SecurityException 当解密过程发生错误时抛出
+     */
+    public List<String> decryptAll(List<String> encryptedValues) {
+        int size = encryptedValues.size();
+        String[] results = new String[size];
+        Map<Long, List<Integer>> groups = new LinkedHashMap<>();
+        CipherTextCodec codec = CipherTextCodec.get();
+        for (int i = 0; i < size; i++) {
+            String encryptedValue = encryptedValues.get(i);
+            if (encryptedValue == null || encryptedValue.isEmpty()) {
+                results[i] = encryptedValue;
+                continue;
+            }
+            if (decryptCache != null && (results[i] = decryptCache.get(encryptedValue)) != null) {
+                continue;
+            }
+            long keyId = codec.peekKeyId(encryptedValue);
+            groups.computeIfAbsent(keyId, k -> new ArrayList<>()).add(i);
+        }
+        if (groups.isEmpty()) {
+            return Arrays.asList(results);
+        }
+
+        Map<Long, SecretKeySpec> keys = keyLoader.loadAll(groups.keySet());
+        for (Map.Entry<Long, List<Integer>> group : groups.entrySet()) {
+            long keyId = group.getKey();
+            try {
+                SecretKeySpec skeySpec = keys.get(keyId);
+                for (int index : group.getValue()) {
+                    String encryptedValue = encryptedValues.get(index);
+                    int length = codec.decode(encryptedValue);
+                    CipherEngine engine = engines.forId(codec.engineId());
+                    results[index] = decryptValue(engine, keyId, skeySpec, codec, length);
+                    if (decryptCache != null) {
+                        decryptCache.put(encryptedValue, results[index]);
+                    }
+                }
+            } catch (Exception e) {
+                log.error("Batch decryption failed for key id: {}", keyId, e);
+                throw new SecurityException("Decryption failed", e);
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * 预先将密钥写入解密密钥缓存
+     *
+     * @param keyValues 密钥ID到密钥值的映射
+     */
+    public void preloadKeys(Map<Long, String> keyValues) {
+        for (Map.Entry<Long, String> entry : keyValues.entrySet()) {
+            keyCache.put(entry.getKey(), toKeySpec(entry.getValue()));
+        }
+    }
+
+    /**
+     * 判断字段值是否为加密内容
+     * 按密文头部结构判断（传统格式$密钥ID$后跟Base64，紧凑格式~后跟版本字节），不解码密文，
+     * 解密前用于跳过明文，加密前用于跳过已经是密文的值
+     *
+     * @param value 字段值
+     * @return 是加密内容时返回true
+     */
+    public static boolean isEncrypted(String value) {
+        return CipherTextCodec.isCipherText(value);
+    }
+
+    /**
+     * 将加密内容转换为二进制存储形式，用于VARBINARY列
+     * 紧凑格式存储其原始字节（版本字节 + varint密钥ID + 密文），传统格式存储其UTF-8字节
+     *
+     * @param encryptedValue 加密内容
+     * @return 二进制形式
+     */
+    public static byte[] toBinary(String encryptedValue) {
+        return CipherTextCodec.toBinary(encryptedValue);
+    }
+
+    /**
+     * 将VARBINARY列中的二进制内容还原为加密内容字符串，两种格式均可识别
+     *
+     * @param data 二进制形式
+     * @return 加密内容
+     */
+    public static String fromBinary(byte[] data) {
+        return CipherTextCodec.fromBinary(data);
+    }
+
+    /**
+     * 将数据库中的密钥值处理为SM4密钥规范
+     */
+    private SecretKeySpec toKeySpec(String key) {
+        return new SecretKeySpec(processKey(key), "SM4");
+    }
+
+    /**
+     * 获取当前加密密钥的密钥规范，与解密共用同一个缓存
+     */
+    private SecretKeySpec encryptionKey(KeyInfo keyInfo) {
+        SecretKeySpec skeySpec = keyCache.get(keyInfo.getId());
+        if (skeySpec == null) {
+            skeySpec = toKeySpec(keyInfo.getKeyValue());
+            keyCache.put(keyInfo.getId(), skeySpec);
+        }
+        return skeySpec;
+    }
+
+    /**
+     * 根据密钥ID获取SM4密钥规范
+     * - 优先从内存缓存读取
+     * - 未命中时由加载器合并加载，同一密钥ID只查询一次
+     *
+     * @param keyId 密钥ID
+     * @return SM4密钥规范
+     */
+    private SecretKeySpec resolveKey(long keyId) {
+        return keyLoader.load(keyId);
+    }
+
+    /**
+     * 加密单个值，中间数据都写入线程私有缓冲区，只创建最终结果字符串
+     */
+    private static String encryptValue(CipherEngine engine, long keyId, SecretKeySpec skeySpec, String content,
+                                       CipherTextCodec codec, boolean compact) throws GeneralSecurityException {
+        int length = codec.encodeUtf8(content);
+        byte[] output = codec.output(engine.getMaxOutputSize(length));
+        int encryptedLength = engine.encrypt(keyId, skeySpec, codec.input(), length, output);
+        if (compact) {
+            return codec.formatCompact(keyId, engine.getId(), output, encryptedLength);
+        }
+        return codec.format(keyId, engine.getId(), output, encryptedLength);
+    }
+
+    /**
+     * 解密已由{@link CipherTextCodec#decode(String)}解码进线程私有缓冲区的密文
+     */
+    private static String decryptValue(CipherEngine engine, long keyId, SecretKeySpec skeySpec,
+                                       CipherTextCodec codec, int length) throws GeneralSecurityException {
+        if (length == 0) {
+            return "";
+        }
+        byte[] output = codec.output(engine.getMaxOutputSize(length));
+        int decryptedLength = engine.decrypt(keyId, skeySpec, codec.input(), codec.payloadOffset(), length, output);
+        return CipherTextCodec.toUtf8String(output, decryptedLength);
+    }
 }
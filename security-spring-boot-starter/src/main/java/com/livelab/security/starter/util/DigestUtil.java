@@ -1,19 +1,104 @@
 package com.livelab.security.starter.util;
 
-import cn.hutool.crypto.SmUtil;
-import cn.hutool.crypto.digest.SM3;
+import com.livelab.security.starter.exception.SecurityException;
+import org.bouncycastle.crypto.digests.SM3Digest;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 加盐摘要工具
+ *
+ * 支持两种模式：
+ * - 加盐（默认，版本0）：SM3(UTF-8(原文 + 盐))的小写十六进制，与hutool的SmUtil.sm3().digestHex(原文 + 盐)一致
+ * - HMAC：HMAC-SM3(索引密钥, UTF-8(原文))的小写十六进制，通过{@link #useHmacKeys(Map, int)}启用
+ *
+ * 每次写入对每个@Digest字段计算一次，按摘要查询时也要计算一次，因此避免每次调用的临时对象：
+ * 1. 每个线程复用SM3Digest和编码缓冲区，doFinal后摘要状态自动重置
+ * 2. 盐只在首次使用时编码一次，原文直接按UTF-8编码进线程私有缓冲区，不拼接字符串
+ * 3. 摘要结果通过查表写入字符数组，每次调用只创建最终的摘要字符串
+ * 4. HMAC的内层(ipad)和外层(opad)压缩状态按密钥预先计算一次，每次调用从中复制状态，
+ *    只需对原文和内层结果各做一次压缩，而不是四次
+ *
+ * 索引密钥按版本配置，可以同时存在多个版本：新写入使用当前版本，
+ * 查询时通过{@link #digestCandidates(String)}得到所有版本的摘要，在重建索引期间新旧数据都能查到
+ */
 @Component
 public class DigestUtil {
-    
+    private static final char[] HEX_CHARS = "0123456789abcdef".toCharArray();
+    /**
+     * 线程私有编码缓冲区保留的最大字节数，更长的原文使用临时缓冲区，避免长期占用内存
+     */
+    private static final int MAX_RETAINED_BUFFER = 4096;
+
+    private static final ThreadLocal<DigestState> STATE = ThreadLocal.withInitial(DigestState::new);
+
     @Value("${security.digest.salt}")
     private String salt;
 
     @Value("${security.digest.algorithm}")
     private String algorithm;
-    
+
+    /**
+     * 按UTF-8编码后的盐，首次计算摘要时初始化
+     */
+    private volatile byte[] saltBytes;
+
+    /**
+     * HMAC模式的索引密钥，为null时使用加盐模式
+     */
+    private volatile HmacKeys hmacKeys;
+
+    /**
+     * 启用HMAC-SM3模式
+     *
+     * @param keys 密钥版本到Base64编码密钥的映射，版本号必须大于0
+     * @param activeVersion 新写入使用的密钥版本
+     * @throws SecurityException 当密钥为空、版本号不合法或当前版本不存在时抛出
+     */
+    public void useHmacKeys(Map<Integer, String> keys, int activeVersion) {
+        if (keys == null || keys.isEmpty()) {
+            throw new SecurityException("No HMAC digest keys configured");
+        }
+        Map<Integer, HmacKey> hmacKeys = new TreeMap<>(Collections.reverseOrder());
+        for (Map.Entry<Integer, String> entry : keys.entrySet()) {
+            int version = entry.getKey();
+            if (version <= 0) {
+                throw new SecurityException("HMAC digest key version must be positive: " + version);
+            }
+            byte[] key;
+            try {
+                key = Base64.getDecoder().decode(entry.getValue().trim());
+            } catch (IllegalArgumentException e) {
+                throw new SecurityException("HMAC digest key " + version + " is not valid Base64", e);
+            }
+            if (key.length == 0) {
+                throw new SecurityException("HMAC digest key " + version + " is empty");
+            }
+            hmacKeys.put(version, new HmacKey(key));
+        }
+        HmacKey active = hmacKeys.get(activeVersion);
+        if (active == null) {
+            throw new SecurityException("Active HMAC digest key version not configured: " + activeVersion);
+        }
+        this.hmacKeys = new HmacKeys(activeVersion, active, hmacKeys);
+    }
+
+    /**
+     * 新写入的摘要使用的密钥版本，加盐模式为0
+     */
+    public int getActiveVersion() {
+        HmacKeys keys = hmacKeys;
+        return keys != null ? keys.activeVersion : 0;
+    }
+
     /**
      * 根据配置的算法计算摘要
      * @param content 原始内容
@@ -23,19 +108,77 @@ public class DigestUtil {
         if (content == null || content.isEmpty()) {
             return null;
         }
-        // 加盐处理
-        String contentWithSalt = content + salt;
-        
-        if ("sm3".equalsIgnoreCase(algorithm)) {
-            SM3 sm3 = SmUtil.sm3();
-            return sm3.digestHex(contentWithSalt);
-        } else {
-            throw new IllegalArgumentException("Unsupported digest algorithm: " + algorithm);
+        checkAlgorithm();
+        HmacKeys keys = hmacKeys;
+        DigestState state = STATE.get();
+        return keys != null ? hmac(content, keys.active, state) : sm3(content, saltBytes(), state);
+    }
+
+    /**
+     * 计算所有密钥版本的摘要，用于按摘要查询
+     * 当前版本在前，重建索引期间仍使用旧版本摘要的数据也能查到，可直接用于IN条件
+     *
+     * @param content 原始内容
+     * @return 各版本的摘要，加盐模式只有一个；内容为空时返回空列表
+     */
+    public List<String> digestCandidates(String content) {
+        if (content == null || content.isEmpty()) {
+            return Collections.emptyList();
+        }
+        checkAlgorithm();
+        HmacKeys keys = hmacKeys;
+        return candidates(content, keys, keys == null ? saltBytes() : null, STATE.get());
+    }
+
+    /**
+     * 批量计算所有密钥版本的摘要，整批共用当前线程的摘要状态，用于按摘要批量查询
+     *
+     * @param contents 原始内容列表，元素可以为null或空字符串（对应结果为空列表）
+     * @return 与输入顺序一致的各版本摘要，每个元素的顺序与{@link #digestCandidates(String)}相同
+     */
+    public List<List<String>> digestCandidatesAll(List<String> contents) {
+        List<List<String>> digests = new ArrayList<>(contents.size());
+        if (contents.isEmpty()) {
+            return digests;
+        }
+        checkAlgorithm();
+        HmacKeys keys = hmacKeys;
+        byte[] saltBytes = keys == null ? saltBytes() : null;
+        DigestState state = STATE.get();
+        for (String content : contents) {
+            boolean empty = content == null || content.isEmpty();
+            digests.add(empty ? Collections.emptyList() : candidates(content, keys, saltBytes, state));
+        }
+        return digests;
+    }
+
+    /**
+     * 批量计算摘要，整批共用当前线程的摘要状态，用于批量写入
+     *
+     * @param contents 原始内容列表，元素可以为null或空字符串（对应结果为null）
+     * @return 与输入顺序一致的摘要列表
+     */
+    public List<String> digestAll(List<String> contents) {
+        List<String> digests = new ArrayList<>(contents.size());
+        if (contents.isEmpty()) {
+            return digests;
         }
+        checkAlgorithm();
+        HmacKeys keys = hmacKeys;
+        byte[] saltBytes = keys == null ? saltBytes() : null;
+        DigestState state = STATE.get();
+        for (String content : contents) {
+            if (content == null || content.isEmpty()) {
+                digests.add(null);
+            } else {
+                digests.add(keys != null ? hmac(content, keys.active, state) : sm3(content, saltBytes, state));
+            }
+        }
+        return digests;
     }
-    
+
     /**
-     * 验证内容与摘要是否匹配
+     * 验证内容与摘要是否匹配，HMAC模式下任一密钥版本匹配即可
      * @param content 原始内容
      * @param digest 摘要值
      * @return 是否匹配
@@ -44,7 +187,147 @@ public class DigestUtil {
         if (content == null || digest == null) {
             return false;
         }
-        String calculatedDigest = digest(content);
-        return digest.equals(calculatedDigest);
+        return digestCandidates(content).contains(digest);
+    }
+
+    private void checkAlgorithm() {
+        if (!"sm3".equalsIgnoreCase(algorithm)) {
+            throw new IllegalArgumentException("Unsupported digest algorithm: " + algorithm);
+        }
+    }
+
+    private byte[] saltBytes() {
+        byte[] bytes = saltBytes;
+        if (bytes == null) {
+            bytes = String.valueOf(salt).getBytes(StandardCharsets.UTF_8);
+            saltBytes = bytes;
+        }
+        return bytes;
+    }
+
+    private List<String> candidates(String content, HmacKeys keys, byte[] saltBytes, DigestState state) {
+        if (keys == null) {
+            return Collections.singletonList(sm3(content, saltBytes, state));
+        }
+        List<String> digests = new ArrayList<>(keys.keys.size());
+        digests.add(hmac(content, keys.active, state));
+        for (HmacKey key : keys.keys.values()) {
+            if (key != keys.active) {
+                digests.add(hmac(content, key, state));
+            }
+        }
+        return digests;
+    }
+
+    private String sm3(String content, byte[] saltBytes, DigestState state) {
+        SM3Digest sm3 = state.sm3;
+        char last = content.charAt(content.length() - 1);
+        if (Character.isHighSurrogate(last) && salt != null && !salt.isEmpty()
+                && Character.isLowSurrogate(salt.charAt(0))) {
+            // 原文末尾和盐开头拼接后组成一个代理对，分开编码会得到不同的字节，只能按拼接后的字符串编码
+            byte[] joined = (content + salt).getBytes(StandardCharsets.UTF_8);
+            sm3.update(joined, 0, joined.length);
+        } else {
+            byte[] buffer = state.buffer(content.length() * 3);
+            int length = CipherTextCodec.encodeUtf8(content, buffer);
+            sm3.update(buffer, 0, length);
+            sm3.update(saltBytes, 0, saltBytes.length);
+        }
+        sm3.doFinal(state.hash, 0);
+        return toHex(state);
+    }
+
+    private static String hmac(String content, HmacKey key, DigestState state) {
+        // 内层：从预计算的ipad状态开始，只压缩原文
+        SM3Digest inner = state.sm3;
+        inner.reset(key.innerState);
+        byte[] buffer = state.buffer(content.length() * 3);
+        int length = CipherTextCodec.encodeUtf8(content, buffer);
+        inner.update(buffer, 0, length);
+        inner.doFinal(state.hash, 0);
+
+        // 外层：从预计算的opad状态开始，只压缩内层结果
+        SM3Digest outer = state.outer;
+        outer.reset(key.outerState);
+        outer.update(state.hash, 0, state.hash.length);
+        outer.doFinal(state.hash, 0);
+        return toHex(state);
+    }
+
+    private static String toHex(DigestState state) {
+        byte[] hash = state.hash;
+        char[] hex = state.hex;
+        for (int i = 0, j = 0; i < hash.length; i++) {
+            int b = hash[i] & 0xFF;
+            hex[j++] = HEX_CHARS[b >>> 4];
+            hex[j++] = HEX_CHARS[b & 0x0F];
+        }
+        return new String(hex);
+    }
+
+    /**
+     * 一个版本的HMAC-SM3索引密钥，保存吸收了ipad和opad之后的压缩状态
+     * 创建后只作为复制的来源，不再修改，可以被多个线程共享
+     */
+    private static final class HmacKey {
+        private static final int BLOCK_SIZE = 64;
+
+        private final SM3Digest innerState = new SM3Digest();
+        private final SM3Digest outerState = new SM3Digest();
+
+        private HmacKey(byte[] key) {
+            if (key.length > BLOCK_SIZE) {
+                SM3Digest digest = new SM3Digest();
+                digest.update(key, 0, key.length);
+                key = new byte[digest.getDigestSize()];
+                digest.doFinal(key, 0);
+            }
+            byte[] ipad = new byte[BLOCK_SIZE];
+            byte[] opad = new byte[BLOCK_SIZE];
+            for (int i = 0; i < BLOCK_SIZE; i++) {
+                byte b = i < key.length ? key[i] : 0;
+                ipad[i] = (byte) (b ^ 0x36);
+                opad[i] = (byte) (b ^ 0x5C);
+            }
+            innerState.update(ipad, 0, BLOCK_SIZE);
+            outerState.update(opad, 0, BLOCK_SIZE);
+        }
+    }
+
+    /**
+     * 配置的全部索引密钥，按版本从新到旧排列
+     */
+    private static final class HmacKeys {
+        private final int activeVersion;
+        private final HmacKey active;
+        private final Map<Integer, HmacKey> keys;
+
+        private HmacKeys(int activeVersion, HmacKey active, Map<Integer, HmacKey> keys) {
+            this.activeVersion = activeVersion;
+            this.active = active;
+            this.keys = keys;
+        }
+    }
+
+    /**
+     * 线程私有的摘要状态和缓冲区
+     */
+    private static final class DigestState {
+        private final SM3Digest sm3 = new SM3Digest();
+        private final SM3Digest outer = new SM3Digest();
+        private final byte[] hash = new byte[sm3.getDigestSize()];
+        private final char[] hex = new char[hash.length * 2];
+        private byte[] buffer = new byte[256];
+
+        private byte[] buffer(int capacity) {
+            if (capacity <= buffer.length) {
+                return buffer;
+            }
+            if (capacity > MAX_RETAINED_BUFFER) {
+                return new byte[capacity];
+            }
+            buffer = new byte[Math.min(MAX_RETAINED_BUFFER, Math.max(capacity, buffer.length * 2))];
+            return buffer;
+        }
     }
 }
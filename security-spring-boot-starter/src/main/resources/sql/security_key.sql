@@ -18,4 +18,13 @@ CREATE TABLE `security_key` (
                                 KEY `idx_expiry_time` (`expiry_time`)
 ) ENGINE=InnoDB AUTO_INCREMENT=69 DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci COMMENT='安全密钥表';
 
+DROP TABLE IF EXISTS `security_key_lease`;
+CREATE TABLE `security_key_lease` (
+                                `lease_name` varchar(50) NOT NULL COMMENT '租约名称',
+                                `owner` varchar(128) NOT NULL COMMENT '当前持有节点',
+                                `expire_time` datetime NOT NULL COMMENT '租约到期时间',
+                                `update_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+                                PRIMARY KEY (`lease_name`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci COMMENT='密钥轮换租约表';
+
 SET FOREIGN_KEY_CHECKS = 1;
\ No newline at end of file
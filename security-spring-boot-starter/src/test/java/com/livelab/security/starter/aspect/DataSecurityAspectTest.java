@@ -0,0 +1,19 @@
+package com.livelab.security.starter.aspect;
+
+import com.livelab.security.starter.util.CryptoUtil;
+import com.livelab.security.starter.util.DigestUtil;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.mockito.Mockito.mock;
+
+/**
+ * 数据安全切面的构造方式
+ */
+class DataSecurityAspectTest {
+
+    @Test
+    void legacyConstructorStillWorks() {
+        assertDoesNotThrow(() -> new DataSecurityAspect(mock(CryptoUtil.class), mock(DigestUtil.class)));
+    }
+}
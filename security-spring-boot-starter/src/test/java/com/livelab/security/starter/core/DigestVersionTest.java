@@ -0,0 +1,130 @@
+package com.livelab.security.starter.core;
+
+import com.livelab.security.starter.annotation.Digest;
+import com.livelab.security.starter.annotation.Encrypt;
+import com.livelab.security.starter.util.CryptoUtil;
+import com.livelab.security.starter.util.DigestUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 写入时记录摘要密钥版本的规则
+ */
+class DigestVersionTest {
+    private static final int ACTIVE_VERSION = 3;
+
+    private EntitySecurityProcessor processor;
+
+    @BeforeEach
+    void setUp() {
+        CryptoUtil cryptoUtil = mock(CryptoUtil.class);
+        when(cryptoUtil.encrypt(anyString())).thenAnswer(invocation -> "$1$" + invocation.getArgument(0));
+        when(cryptoUtil.encryptAll(anyList())).thenAnswer(invocation -> prefix("$1$", invocation.getArgument(0)));
+        DigestUtil digestUtil = mock(DigestUtil.class);
+        when(digestUtil.digest(anyString())).thenAnswer(invocation -> "d:" + invocation.getArgument(0));
+        when(digestUtil.digestAll(anyList())).thenAnswer(invocation -> prefix("d:", invocation.getArgument(0)));
+        when(digestUtil.getActiveVersion()).thenReturn(ACTIVE_VERSION);
+        processor = new EntitySecurityProcessor(cryptoUtil, digestUtil, new ParallelDecryptor(false, 1000, 1), null);
+    }
+
+    @Test
+    void completeEntityGetsActiveVersion() {
+        Account account = new Account("13800138000", "user@example.com");
+        account.digestVersion = 1;
+
+        processor.encrypt(account);
+
+        assertEquals("d:13800138000", account.phoneDigest);
+        assertEquals("d:user@example.com", account.emailDigest);
+        assertEquals(ACTIVE_VERSION, account.digestVersion);
+    }
+
+    @Test
+    void partialEntityKeepsOldVersion() {
+        Account account = new Account("13800138000", null);
+        account.digestVersion = 1;
+
+        processor.encrypt(account);
+
+        assertEquals("d:13800138000", account.phoneDigest);
+        assertNull(account.emailDigest);
+        assertEquals(1, account.digestVersion);
+    }
+
+    @Test
+    void batchStampsOnlyCompleteEntities() {
+        Account complete = new Account("13800138000", "user@example.com");
+        Account partial = new Account("13800138001", null);
+        partial.digestVersion = 1;
+        Account empty = new Account(null, null);
+
+        processor.encryptAll(Arrays.asList(complete, partial, empty));
+
+        assertEquals(ACTIVE_VERSION, complete.digestVersion);
+        assertEquals("d:13800138001", partial.phoneDigest);
+        assertEquals(1, partial.digestVersion);
+        assertNull(empty.digestVersion);
+    }
+
+    @Test
+    void insertIgnoresNullDigestFields() {
+        Account single = new Account("13800138000", null);
+        Account partial = new Account("13800138001", null);
+        Account empty = new Account(null, null);
+
+        processor.encryptGraph(single, true);
+        processor.encryptGraph(Arrays.asList(partial, empty), true);
+
+        assertEquals(ACTIVE_VERSION, single.digestVersion);
+        assertEquals("d:13800138001", partial.phoneDigest);
+        assertEquals(ACTIVE_VERSION, partial.digestVersion);
+        assertEquals(ACTIVE_VERSION, empty.digestVersion);
+    }
+
+    @Test
+    void skippedCipherTextKeepsOldVersion() {
+        Account account = new Account("$1$MTM4MDAxMzgwMDA=", "user@example.com");
+        account.digestVersion = 1;
+
+        processor.encryptAll(Collections.singletonList(account));
+
+        assertEquals("d:user@example.com", account.emailDigest);
+        assertEquals(1, account.digestVersion);
+    }
+
+    private static List<String> prefix(String prefix, List<?> values) {
+        List<String> result = new ArrayList<>();
+        for (Object value : values) {
+            result.add(prefix + value);
+        }
+        return result;
+    }
+
+    static class Account {
+        @Encrypt
+        @Digest
+        private String phone;
+        private String phoneDigest;
+        @Digest
+        private String email;
+        private String emailDigest;
+        private Integer digestVersion;
+
+        Account(String phone, String email) {
+            this.phone = phone;
+            this.email = email;
+        }
+    }
+}
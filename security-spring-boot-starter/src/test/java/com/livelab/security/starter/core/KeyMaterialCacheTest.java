@@ -0,0 +1,76 @@
+package com.livelab.security.starter.core;
+
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.spec.SecretKeySpec;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * 密钥缓存的开放寻址写入
+ * 容量为8时探测范围覆盖整个槽位数组，任意ID都会互相冲突
+ */
+class KeyMaterialCacheTest {
+    private static final int CAPACITY = 8;
+
+    @Test
+    void reputAfterEvictionDoesNotDuplicate() {
+        KeyMaterialCache cache = new KeyMaterialCache(CAPACITY);
+        for (long id = 1; id <= CAPACITY; id++) {
+            cache.put(id, key(id));
+        }
+        cache.evict(1);
+        for (long id = 2; id <= CAPACITY; id++) {
+            cache.put(id, key(id));
+        }
+
+        // 没有重复条目时墓碑仍然空闲，新ID写入后其他条目都保留
+        cache.put(CAPACITY + 1, key(CAPACITY + 1));
+
+        assertNull(cache.get(1));
+        for (long id = 2; id <= CAPACITY + 1; id++) {
+            assertNotNull(cache.get(id), "key " + id + " was overwritten");
+        }
+    }
+
+    @Test
+    void reputKeepsExistingEntry() {
+        KeyMaterialCache cache = new KeyMaterialCache(CAPACITY);
+        SecretKeySpec first = key(1);
+        cache.put(1, first);
+        cache.put(2, key(2));
+        cache.evict(2);
+
+        cache.put(1, key(1));
+
+        assertSame(first, cache.get(1));
+    }
+
+    @Test
+    void fullTableEvictsOneEntry() {
+        KeyMaterialCache cache = new KeyMaterialCache(CAPACITY);
+        for (long id = 1; id <= CAPACITY; id++) {
+            cache.put(id, key(id));
+        }
+
+        cache.put(CAPACITY + 1, key(CAPACITY + 1));
+
+        assertNotNull(cache.get(CAPACITY + 1));
+        int cached = 0;
+        for (long id = 1; id <= CAPACITY; id++) {
+            if (cache.get(id) != null) {
+                cached++;
+            }
+        }
+        assertEquals(CAPACITY - 1, cached);
+    }
+
+    private static SecretKeySpec key(long id) {
+        byte[] bytes = new byte[16];
+        bytes[0] = (byte) id;
+        return new SecretKeySpec(bytes, "SM4");
+    }
+}
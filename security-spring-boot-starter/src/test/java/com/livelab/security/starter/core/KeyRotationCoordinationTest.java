@@ -0,0 +1,278 @@
+package com.livelab.security.starter.core;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.extension.spring.MybatisSqlSessionFactoryBean;
+import com.livelab.security.starter.mapper.SecurityKeyLeaseMapper;
+import com.livelab.security.starter.mapper.SecurityKeyMapper;
+import com.livelab.security.starter.model.KeyInfo;
+import com.livelab.security.starter.properties.SecurityProperties;
+import com.zaxxer.hikari.HikariDataSource;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 多个节点（KeyManager + KeyRotationLease）共用一个H2数据库时的协调轮换
+ */
+class KeyRotationCoordinationTest {
+    private static final int NODES = 4;
+
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private ExecutorService executor;
+    private List<Node> nodes;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        dataSource.setMaximumPoolSize(NODES * 2);
+        new ResourceDatabasePopulator(new ClassPathResource("sql/security_key_h2.sql")).execute(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+
+        MybatisSqlSessionFactoryBean factoryBean = new MybatisSqlSessionFactoryBean();
+        factoryBean.setDataSource(dataSource);
+        factoryBean.setConfiguration(new MybatisConfiguration());
+        factoryBean.setMapperLocations(new ClassPathResource("mapper/SecurityKeyMapper.xml"));
+        SqlSessionFactory sqlSessionFactory = factoryBean.getObject();
+        sqlSessionFactory.getConfiguration().addMapper(SecurityKeyLeaseMapper.class);
+        SqlSessionTemplate sqlSession = new SqlSessionTemplate(sqlSessionFactory);
+        SecurityKeyMapper keyMapper = sqlSession.getMapper(SecurityKeyMapper.class);
+        SecurityKeyLeaseMapper leaseMapper = sqlSession.getMapper(SecurityKeyLeaseMapper.class);
+
+        SecurityProperties properties = new SecurityProperties();
+        // 预生成窗口大于密钥周期，租约持有者每次刷新都会发布下一个密钥，每次刷新即一次轮换
+        properties.getCrypto().setKeyPregenerateSeconds(3600);
+        properties.getCrypto().setRotationLeaseSeconds(30);
+
+        nodes = new ArrayList<>();
+        for (int i = 0; i < NODES; i++) {
+            nodes.add(new Node("node-" + i, properties, keyMapper, leaseMapper));
+        }
+        executor = Executors.newFixedThreadPool(NODES);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        dataSource.close();
+    }
+
+    @Test
+    void coldStartPublishesSingleKey() throws Exception {
+        List<KeyInfo> keys = onAllNodes(node -> node.keyManager.getKeyInfo());
+
+        assertEquals(1, keyCount());
+        Set<Long> ids = new HashSet<>();
+        for (KeyInfo key : keys) {
+            assertNotNull(key.getId());
+            ids.add(key.getId());
+        }
+        assertEquals(1, ids.size());
+        assertEquals(1, totalInserts());
+    }
+
+    @Test
+    void onlyLeaderPublishesOneKeyPerRotation() throws Exception {
+        onAllNodes(node -> node.keyManager.getKeyInfo());
+        String leader = leaseOwner();
+
+        int rounds = 5;
+        for (int round = 1; round <= rounds; round++) {
+            onAllNodes(node -> {
+                node.keyManager.refreshActiveKey();
+                return null;
+            });
+            assertEquals(1 + round, keyCount());
+            assertEquals(leader, leaseOwner());
+        }
+        for (Node node : nodes) {
+            if (node.id.equals(leader)) {
+                assertEquals(1 + rounds, node.inserts.get());
+            } else {
+                assertEquals(0, node.inserts.get());
+            }
+        }
+    }
+
+    @Test
+    void nextKeyIsStagedAfterLatestKey() throws Exception {
+        onAllNodes(node -> node.keyManager.getKeyInfo());
+        onAllNodes(node -> {
+            node.keyManager.refreshActiveKey();
+            return null;
+        });
+
+        List<LocalDateTime[]> periods = jdbcTemplate.query(
+            "select effective_time, expiry_time from security_key order by id",
+            (rs, i) -> new LocalDateTime[]{rs.getTimestamp(1).toLocalDateTime(), rs.getTimestamp(2).toLocalDateTime()});
+        assertEquals(2, periods.size());
+        LocalDateTime firstExpiry = periods.get(0)[1];
+        assertEquals(firstExpiry.minusSeconds(30), periods.get(1)[0]);
+        assertEquals(firstExpiry.plusMinutes(2), periods.get(1)[1]);
+
+        // 下一个密钥尚未生效，各节点继续使用当前密钥
+        Set<Long> active = new HashSet<>(onAllNodes(node -> node.keyManager.getKeyInfo().getId()));
+        assertEquals(1, active.size());
+    }
+
+    @Test
+    void expiredLeaseIsTakenOverByOneNode() throws Exception {
+        onAllNodes(node -> node.keyManager.getKeyInfo());
+        String leader = leaseOwner();
+        jdbcTemplate.update("update security_key_lease set expire_time = ?",
+            Timestamp.valueOf(LocalDateTime.now().minusSeconds(1)));
+        int before = totalInserts();
+
+        onAllNodes(node -> {
+            node.keyManager.refreshActiveKey();
+            return null;
+        });
+
+        assertEquals(before + 1, totalInserts());
+        assertEquals(2, keyCount());
+        String newLeader = leaseOwner();
+        assertNotNull(newLeader);
+        for (Node node : nodes) {
+            if (!node.id.equals(newLeader)) {
+                assertEquals(node.id.equals(leader) ? 1 : 0, node.inserts.get());
+            }
+        }
+    }
+
+    @Test
+    void retiredKeysStayReadableOnAllNodes() throws Exception {
+        long keyId = onAllNodes(node -> node.keyManager.getKeyInfo()).get(0).getId();
+        jdbcTemplate.update("update security_key set expiry_time = ? where id = ?",
+            Timestamp.valueOf(LocalDateTime.now().minusSeconds(1)), keyId);
+        String leader = leaseOwner();
+
+        onAllNodes(node -> {
+            node.keyManager.cleanExpiredKeys();
+            return null;
+        });
+
+        // 只有租约持有者标记失效，失效的密钥仍能按ID加载，用于解密旧数据
+        assertEquals(0, (int) jdbcTemplate.queryForObject(
+            "select status from security_key where id = ?", Integer.class, keyId));
+        for (Node node : nodes) {
+            assertTrue(node.keyManager.getKeyValuesByIds(Collections.singleton(keyId)).containsKey(keyId));
+        }
+        assertEquals(leader, leaseOwner());
+    }
+
+    @Test
+    void waitingForLeaderDoesNotHoldKeyManagerLock() throws Exception {
+        // 租约被一个不会发布密钥的节点持有，本节点只能等待
+        jdbcTemplate.update("insert into security_key_lease (lease_name, owner, expire_time) values (?, ?, ?)",
+            "GLOBAL_KEY_ROTATION", "absent-leader", Timestamp.valueOf(LocalDateTime.now().plusSeconds(30)));
+        KeyManager keyManager = nodes.get(0).keyManager;
+        Future<KeyInfo> first = executor.submit(keyManager::getKeyInfo);
+        Future<KeyInfo> second = executor.submit(keyManager::getKeyInfo);
+        Thread.sleep(500);
+
+        // 等待期间后台任务不被阻塞
+        Future<?> refresh = executor.submit(keyManager::refreshActiveKey);
+        refresh.get(2, TimeUnit.SECONDS);
+        assertTrue(!first.isDone() && !second.isDone());
+
+        jdbcTemplate.update("insert into security_key (key_type, key_value, effective_time, expiry_time, status) "
+                + "values ('GLOBAL_KEY', 'published-by-leader', ?, ?, 1)",
+            Timestamp.valueOf(LocalDateTime.now().minusSeconds(1)), Timestamp.valueOf(LocalDateTime.now().plusMinutes(2)));
+        assertEquals("published-by-leader", first.get(5, TimeUnit.SECONDS).getKeyValue());
+        assertEquals("published-by-leader", second.get(5, TimeUnit.SECONDS).getKeyValue());
+        assertEquals(0, totalInserts());
+    }
+
+    /**
+     * 所有节点同时执行同一操作，返回各节点的结果
+     */
+    private <T> List<T> onAllNodes(Function<Node, T> action) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<T>> futures = new ArrayList<>();
+        for (Node node : nodes) {
+            Callable<T> task = () -> {
+                start.await();
+                return action.apply(node);
+            };
+            futures.add(executor.submit(task));
+        }
+        start.countDown();
+        List<T> results = new ArrayList<>();
+        for (Future<T> future : futures) {
+            results.add(future.get(60, TimeUnit.SECONDS));
+        }
+        return results;
+    }
+
+    private int keyCount() {
+        return jdbcTemplate.queryForObject("select count(*) from security_key", Integer.class);
+    }
+
+    private String leaseOwner() {
+        return jdbcTemplate.queryForObject("select owner from security_key_lease", String.class);
+    }
+
+    private int totalInserts() {
+        int total = 0;
+        for (Node node : nodes) {
+            total += node.inserts.get();
+        }
+        return total;
+    }
+
+    /**
+     * 一个集群节点，密钥写入次数通过代理统计
+     */
+    private static final class Node {
+        private final String id;
+        private final KeyManager keyManager;
+        private final AtomicInteger inserts = new AtomicInteger();
+
+        private Node(String id, SecurityProperties properties, SecurityKeyMapper keyMapper,
+                     SecurityKeyLeaseMapper leaseMapper) {
+            this.id = id;
+            SecurityKeyMapper counting = (SecurityKeyMapper) Proxy.newProxyInstance(
+                SecurityKeyMapper.class.getClassLoader(), new Class<?>[]{SecurityKeyMapper.class},
+                (proxy, method, args) -> {
+                    if ("insert".equals(method.getName())) {
+                        inserts.incrementAndGet();
+                    }
+                    try {
+                        return method.invoke(keyMapper, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+            this.keyManager = new KeyManager(properties, counting, new KeyRotationLease(leaseMapper, 30, id));
+        }
+    }
+}
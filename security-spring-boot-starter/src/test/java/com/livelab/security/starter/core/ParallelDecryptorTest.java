@@ -0,0 +1,33 @@
+package com.livelab.security.starter.core;
+
+import com.livelab.security.starter.exception.SecurityException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 并行解密阈值的校验
+ */
+class ParallelDecryptorTest {
+
+    @Test
+    void disabledDecryptorIgnoresThreshold() {
+        ParallelDecryptor decryptor = new ParallelDecryptor(false, 0, 1);
+        List<List<Integer>> chunks = new ArrayList<>();
+
+        decryptor.forEachChunk(Arrays.asList(1, 2, 3), chunks::add);
+
+        assertEquals(1, chunks.size());
+        assertEquals(3, chunks.get(0).size());
+    }
+
+    @Test
+    void enabledDecryptorRejectsNonPositiveThreshold() {
+        assertThrows(SecurityException.class, () -> new ParallelDecryptor(true, 0, 1));
+    }
+}
@@ -0,0 +1,125 @@
+package com.livelab.security.starter.core;
+
+import com.livelab.security.starter.annotation.Encrypt;
+import com.livelab.security.starter.exception.SecurityException;
+import com.livelab.security.starter.model.KeyInfo;
+import com.livelab.security.starter.util.CryptoUtil;
+import com.livelab.security.starter.util.DigestUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 流水线批量写入在加密失败时不能刷写明文
+ */
+class PipelinedBatchWriterTest {
+    private CryptoUtil cryptoUtil;
+    private EntitySecurityProcessor processor;
+    private PipelinedBatchWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        cryptoUtil = mock(CryptoUtil.class);
+        when(cryptoUtil.currentKey()).thenReturn(new KeyInfo(1L, "0123456789abcdef"));
+        processor = new EntitySecurityProcessor(cryptoUtil, mock(DigestUtil.class),
+            new ParallelDecryptor(false, 1000, 1), null);
+        writer = new PipelinedBatchWriter(processor, cryptoUtil, 2, 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        writer.shutdown();
+    }
+
+    @Test
+    void failedEncryptionAbortsWriteBeforeFlush() {
+        when(cryptoUtil.encryptAll(anyList(), any(KeyInfo.class))).thenThrow(new IllegalStateException("engine failure"));
+        List<Account> accounts = accounts(10);
+        List<Account> flushed = new ArrayList<>();
+
+        SecurityException e = assertThrows(SecurityException.class,
+            () -> writer.write(accounts, 4, flushed::addAll));
+
+        assertTrue(e.getCause() instanceof IllegalStateException);
+        assertTrue(flushed.isEmpty());
+    }
+
+    @Test
+    void singleChunkFailureAlsoAborts() {
+        when(cryptoUtil.encryptAll(anyList(), any(KeyInfo.class))).thenThrow(new IllegalStateException("engine failure"));
+        List<Account> flushed = new ArrayList<>();
+
+        assertThrows(SecurityException.class, () -> writer.write(accounts(3), 100, flushed::addAll));
+        assertTrue(flushed.isEmpty());
+    }
+
+    @Test
+    void encryptedChunksAreFlushedInOrder() {
+        when(cryptoUtil.encryptAll(anyList(), any(KeyInfo.class))).thenAnswer(invocation -> {
+            List<String> encrypted = new ArrayList<>();
+            for (Object value : invocation.<List<?>>getArgument(0)) {
+                encrypted.add("$1$" + value);
+            }
+            return encrypted;
+        });
+        List<Account> flushed = new ArrayList<>();
+        List<Integer> chunkSizes = new ArrayList<>();
+
+        PipelinedBatchWriter.BatchWriteStats stats = writer.write(accounts(10), 4, chunk -> {
+            chunkSizes.add(chunk.size());
+            flushed.addAll(chunk);
+        });
+
+        assertEquals(10, stats.getRows());
+        assertEquals(3, stats.getChunks());
+        assertEquals(Arrays.asList(4, 4, 2), chunkSizes);
+        assertEquals(10, flushed.size());
+        for (int i = 0; i < flushed.size(); i++) {
+            assertEquals("$1$card-" + i, flushed.get(i).getCardNo());
+        }
+    }
+
+    @Test
+    void nonStrictEncryptAllOnlyLogs() {
+        when(cryptoUtil.encryptAll(anyList())).thenThrow(new IllegalStateException("engine failure"));
+        Account account = new Account("card-0");
+
+        processor.encryptAll(Collections.singletonList(account));
+
+        assertEquals("card-0", account.getCardNo());
+    }
+
+    private static List<Account> accounts(int count) {
+        List<Account> accounts = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            accounts.add(new Account("card-" + i));
+        }
+        return accounts;
+    }
+
+    static class Account {
+        @Encrypt
+        private String cardNo;
+
+        Account(String cardNo) {
+            this.cardNo = cardNo;
+        }
+
+        String getCardNo() {
+            return cardNo;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+CREATE TABLE security_key (
+    id bigint NOT NULL AUTO_INCREMENT,
+    key_type varchar(50) NOT NULL,
+    key_value varchar(255) NOT NULL,
+    effective_time datetime NOT NULL,
+    expiry_time datetime NOT NULL,
+    status tinyint NOT NULL DEFAULT 1,
+    create_time datetime NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    update_time datetime NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE security_key_lease (
+    lease_name varchar(50) NOT NULL,
+    owner varchar(128) NOT NULL,
+    expire_time datetime NOT NULL,
+    update_time datetime NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (lease_name)
+);
@@ -52,6 +52,10 @@ public class User {
     @TableField("id_card_digest")
     private String idCardDigest;
 
+    @JsonIgnore
+    @TableField("digest_version")
+    private Integer digestVersion;
+
     private Integer deleted;
 
     private Integer status;
@@ -2,7 +2,9 @@ package com.livelab.user.service;
 
 import com.baomidou.mybatisplus.extension.service.IService;
 import com.livelab.user.entity.User;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 public interface UserService extends IService<User> {
     boolean saveUser(User user);
@@ -13,4 +15,7 @@ public interface UserService extends IService<User> {
     User getByPhone(String phone);
     User getByEmail(String email);
     User getByIdCard(String idCard);
+    Map<String, List<User>> getByPhones(Collection<String> phones);
+    Map<String, List<User>> getByEmails(Collection<String> emails);
+    Map<String, List<User>> getByIdCards(Collection<String> idCards);
 }
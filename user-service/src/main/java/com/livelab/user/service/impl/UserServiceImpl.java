@@ -1,20 +1,37 @@
 package com.livelab.user.service.impl;
 
-import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.enums.SqlMethod;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.baomidou.mybatisplus.extension.toolkit.SqlHelper;
+import com.livelab.security.starter.annotation.SecureSkip;
+import com.livelab.security.starter.core.PipelinedBatchWriter;
+import com.livelab.security.starter.query.SecureBatchLookup;
+import com.livelab.security.starter.query.SecureLambdaQueryWrapper;
+import com.livelab.security.starter.util.DigestUtil;
 import com.livelab.user.entity.User;
 import com.livelab.user.mapper.UserMapper;
 import com.livelab.user.service.UserService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.util.DigestUtils;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 @Slf4j
 @Service
 public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements UserService {
+    private final PipelinedBatchWriter batchWriter;
+    private final DigestUtil digestUtil;
+    private final SecureBatchLookup batchLookup;
+
+    public UserServiceImpl(PipelinedBatchWriter batchWriter, DigestUtil digestUtil, SecureBatchLookup batchLookup) {
+        this.batchWriter = batchWriter;
+        this.digestUtil = digestUtil;
+        this.batchLookup = batchLookup;
+    }
+
     @Override
     @Transactional
     public boolean saveUser(User user) {
@@ -22,11 +39,27 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
         return save(user);
     }
 
+    /**
+     * 批量保存用户，分片加密与executeBatch流水线执行，由batchWriter负责加密，切面不再处理
+     */
     @Override
+    @SecureSkip
     @Transactional
     public boolean saveBatch(List<User> users) {
         log.info("Batch saving {} users", users.size());
-        return super.saveBatch(users, 100);
+        String sqlStatement = getSqlStatement(SqlMethod.INSERT_ONE);
+        return SqlHelper.executeBatch(getEntityClass(), super.log, sqlSession -> {
+            PipelinedBatchWriter.BatchWriteStats stats = batchWriter.write(users, 100, chunk -> {
+                for (User user : chunk) {
+                    sqlSession.insert(sqlStatement, user);
+                }
+                sqlSession.flushStatements();
+            });
+            log.info("Batch saved {} users in {} chunks: encrypt={}ms, wait={}ms, flush={}ms, total={}ms",
+                    stats.getRows(), stats.getChunks(), stats.getEncryptNanos() / 1_000_000,
+                    stats.getWaitNanos() / 1_000_000, stats.getFlushNanos() / 1_000_000,
+                    stats.getTotalNanos() / 1_000_000);
+        });
     }
 
     @Override
@@ -58,30 +91,42 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
     @Override
     public User getByPhone(String phone) {
         log.info("Getting user by phone");
-        String phoneDigest = DigestUtils.md5DigestAsHex(phone.getBytes());
-        return lambdaQuery()
-                .eq(User::getPhoneDigest, phoneDigest)
-                .eq(User::getDeleted, 0)
-                .one();
+        return getOne(new SecureLambdaQueryWrapper<User>(digestUtil)
+                .eqSecure(User::getPhone, phone)
+                .eq(User::getDeleted, 0));
     }
 
     @Override
     public User getByEmail(String email) {
         log.info("Getting user by email");
-        String emailDigest = DigestUtils.md5DigestAsHex(email.getBytes());
-        return lambdaQuery()
-                .eq(User::getEmailDigest, emailDigest)
-                .eq(User::getDeleted, 0)
-                .one();
+        return getOne(new SecureLambdaQueryWrapper<User>(digestUtil)
+                .eqSecure(User::getEmail, email)
+                .eq(User::getDeleted, 0));
     }
 
     @Override
     public User getByIdCard(String idCard) {
         log.info("Getting user by idCard");
-        String idCardDigest = DigestUtils.md5DigestAsHex(idCard.getBytes());
-        return lambdaQuery()
-                .eq(User::getIdCardDigest, idCardDigest)
-                .eq(User::getDeleted, 0)
-                .one();
+        return getOne(new SecureLambdaQueryWrapper<User>(digestUtil)
+                .eqSecure(User::getIdCard, idCard)
+                .eq(User::getDeleted, 0));
+    }
+
+    @Override
+    public Map<String, List<User>> getByPhones(Collection<String> phones) {
+        log.info("Getting users by {} phones", phones.size());
+        return batchLookup.lookup(User::getPhone, phones, wrapper -> list(wrapper.eq(User::getDeleted, 0)));
+    }
+
+    @Override
+    public Map<String, List<User>> getByEmails(Collection<String> emails) {
+        log.info("Getting users by {} emails", emails.size());
+        return batchLookup.lookup(User::getEmail, emails, wrapper -> list(wrapper.eq(User::getDeleted, 0)));
+    }
+
+    @Override
+    public Map<String, List<User>> getByIdCards(Collection<String> idCards) {
+        log.info("Getting users by {} idCards", idCards.size());
+        return batchLookup.lookup(User::getIdCard, idCards, wrapper -> list(wrapper.eq(User::getDeleted, 0)));
     }
 }
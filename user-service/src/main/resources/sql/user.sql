@@ -9,6 +9,7 @@ CREATE TABLE `user` (
                         `phone_digest` varchar(255) CHARACTER SET utf8mb4 COLLATE utf8mb4_0900_ai_ci DEFAULT NULL COMMENT '手机号摘要',
                         `email_digest` varchar(255) CHARACTER SET utf8mb4 COLLATE utf8mb4_0900_ai_ci DEFAULT NULL COMMENT '邮箱摘要',
                         `id_card_digest` varchar(255) CHARACTER SET utf8mb4 COLLATE utf8mb4_0900_ai_ci DEFAULT NULL COMMENT '身份证号摘要',
+                        `digest_version` int DEFAULT NULL COMMENT '摘要密钥版本：0-加盐SM3，大于0-HMAC-SM3索引密钥版本',
                         `deleted` tinyint NOT NULL DEFAULT '0' COMMENT '是否删除：0-未删除，1-已删除',
                         `create_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
                         `update_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
@@ -16,7 +17,8 @@ CREATE TABLE `user` (
                         PRIMARY KEY (`id`),
                         KEY `idx_phone_digest` (`phone_digest`),
                         KEY `idx_email_digest` (`email_digest`),
-                        KEY `idx_id_card_digest` (`id_card_digest`)
+                        KEY `idx_id_card_digest` (`id_card_digest`),
+                        KEY `idx_digest_version` (`digest_version`)
 ) ENGINE=InnoDB AUTO_INCREMENT=30 DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci COMMENT='用户表';
 
 SET FOREIGN_KEY_CHECKS = 1;
\ No newline at end of file